@@ -21,12 +21,20 @@
 package ags.utils;
 
 import ags.utils.dataStructures.Entry;
+import ags.utils.dataStructures.IndexStats;
+import ags.utils.dataStructures.MinBinaryHeap;
+import ags.utils.dataStructures.NearestNeighborIndex;
+import ags.utils.dataStructures.NeighborVisitor;
 import ags.utils.dataStructures.ResultHeap;
 import ags.utils.dataStructures.ReverseResultHeap;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * An efficient well-optimized kd-tree
@@ -37,30 +45,95 @@ import java.util.List;
 // MODIFIED by Voidious, 2011:
 // - add find farthest neighbor search
 // - also check cursor != null in removeOld
-public abstract class KdTree<T>
+//
+// MODIFIED for Shandroid, 2026:
+// - store leaf coordinates in one flat point-major array per leaf, copied in
+//   on addPoint rather than aliasing the caller's array
+// - add batched nearest neighbor search over many query points
+// - removeOld keeps counts and bounds exact, collapses emptied nodes, and can
+//   rebuild the tree after enough evictions
+// - track insertion order of bounded trees in a preallocated ring of slots,
+//   each pointing back at the leaf entry holding it, instead of a LinkedList
+// - distance functions take the weights to measure with, so searches can
+//   supply their own weights
+// - nearest neighbor search can write into a caller-owned ResultHeap
+// - searches keep their traversal state in a per-thread context instead of
+//   the nodes, and the tree is guarded by a read/write lock
+// - implement NearestNeighborIndex
+// - approximate search with an epsilon bound and a budget of leaves
+// - range search for every point within a radius
+// - store an insertion sequence number with each point and return it with
+//   search results
+// - optional float coordinate storage
+// - score whole leaves through pointDists, which subclasses can batch
+// - incremental nearest neighbor iterator, expanding nodes best first
+// - optional counts of the work searches do, and of evictions
+// - leaves whose points a split can't separate grow instead of splitting
+//
+// Threading: any number of threads may search the tree at once while another
+// thread adds points. Adding (and any rebuild) holds the root's write lock and
+// searching holds its read lock, so a search sees each insert either not at
+// all or completely, including any eviction and restructuring it caused, and
+// sees everything written before the last insert that completed before it
+// started. Configuration methods (setRebuildRatio, and setWeights in
+// subclasses) should be called before the tree is shared between threads.
+public abstract class KdTree<T> implements NearestNeighborIndex<T>
 {
 	/**
-	 * Enumeration representing the status of a node during the running
+	 * Per-thread scratch space for searches, so searches keep no state in the
+	 * tree and can run side by side
 	 */
-	private enum Status
+	private static final class SearchContext
 	{
-		NONE, LEFTVISITED, RIGHTVISITED, ALLVISITED
+		private Object[] stack;
+		private int[] batchWork;
+		private double[] leafDistances;
+		private int nodes, leaves, distances;
+		private boolean inUse;
+
+		SearchContext()
+		{
+			this.stack = new Object[64];
+			this.batchWork = new int[64];
+			this.leafDistances = new double[BUCKET_SIZE];
+			this.inUse = false;
+		}
 	}
 
 	// Static variables
 	private static final int BUCKET_SIZE = 24;
+	private static final ThreadLocal<SearchContext> SEARCH_CONTEXT = ThreadLocal.withInitial(SearchContext::new);
 
 	// All types
 	private int dimensions;
 	private KdTree<T> parent;
+	private KdTree<T> root;
 
-	// Root only
-	private LinkedList<double[]> locationStack;
+	// Root only. Bounded trees give each point a slot in a ring of
+	// sizeLimit + 1 entries, in insertion order, and track which leaf and
+	// leaf index currently hold each slot's point.
 	private Integer sizeLimit;
+	private KdTree<T>[] slotLeaves;
+	private int[] slotIndexes;
+	private int nextSlot;
+	private long nextSequence;
+	private int modCount;
+	private IndexStats stats;
+	private boolean floatStorage;
+	private double[] roundedPoint;
+	private double[] pointScratch;
+	private ReentrantReadWriteLock lock;
+	private double rebuildRatio;
+	private int evictionsSinceRebuild;
 
-	// Leaf only
-	private double[][] locations;
+	// Leaf only. Coordinates are stored point-major: point i occupies
+	// locations[i * dimensions] .. locations[i * dimensions + dimensions - 1],
+	// or the same positions of floatLocations in trees storing floats
+	private double[] locations;
+	private float[] floatLocations;
 	private Object[] data;
+	private long[] sequences;
+	private int[] slots;
 	private int locationCount;
 
 	// Stem only
@@ -72,33 +145,47 @@ public abstract class KdTree<T>
 	private double[] minLimit, maxLimit;
 	private boolean singularity;
 
-	// Temporary
-	private Status status;
-
 	/**
 	 * Construct a KdTree with a given number of dimensions and a limit on
 	 * maxiumum size (after which it throws away old points)
 	 */
 	public KdTree(int dimensions, Integer sizeLimit)
+	{
+		this(dimensions, sizeLimit, false);
+	}
+
+	/**
+	 * Construct a KdTree that optionally stores coordinates as floats. Points
+	 * are rounded to float precision as they're added, and distances are
+	 * measured to the rounded points.
+	 */
+	public KdTree(int dimensions, Integer sizeLimit, boolean floatStorage)
 	{
 		this.dimensions = dimensions;
+		this.root = this;
+		this.floatStorage = floatStorage;
+		this.roundedPoint = new double[dimensions];
+		this.pointScratch = new double[dimensions];
 
 		// Init as leaf
-		this.locations = new double[BUCKET_SIZE][];
+		this.allocateCoordinates(BUCKET_SIZE);
 		this.data = new Object[BUCKET_SIZE];
+		this.sequences = new long[BUCKET_SIZE];
 		this.locationCount = 0;
 		this.singularity = true;
 
 		// Init as root
 		this.parent = null;
+		this.root = this;
+		this.lock = new ReentrantReadWriteLock();
 		this.sizeLimit = sizeLimit;
 		if (sizeLimit != null)
 		{
-			this.locationStack = new LinkedList<>();
-		}
-		else
-		{
-			this.locationStack = null;
+			@SuppressWarnings("unchecked")
+			KdTree<T>[] slotLeaves = (KdTree<T>[]) new KdTree<?>[sizeLimit + 1];
+			this.slotLeaves = slotLeaves;
+			this.slotIndexes = new int[sizeLimit + 1];
+			this.slots = new int[BUCKET_SIZE];
 		}
 	}
 
@@ -110,29 +197,72 @@ public abstract class KdTree<T>
 		this.dimensions = parent.dimensions;
 
 		// Init as leaf
-		this.locations = new double[Math.max(BUCKET_SIZE, parent.locationCount)][];
-		this.data = new Object[Math.max(BUCKET_SIZE, parent.locationCount)];
+		int capacity = Math.max(BUCKET_SIZE, parent.locationCount);
+		this.root = parent.root;
+		this.allocateCoordinates(capacity);
+		this.data = new Object[capacity];
+		this.sequences = new long[capacity];
 		this.locationCount = 0;
 		this.singularity = true;
 
+		if (parent.root.slotLeaves != null)
+		{
+			this.slots = new int[capacity];
+		}
+
 		// Init as non-root
 		this.parent = parent;
-		this.locationStack = null;
 		this.sizeLimit = null;
 	}
 
-	// Override in subclasses
-	protected abstract double pointDist(double[] p1, double[] p2);
+	// Override in subclasses. pointDist measures from the point stored at
+	// points[offset] .. points[offset + location.length - 1] to location.
+	// 'weights' are the per-axis weights for this search, which unweighted
+	// distances ignore.
+	protected abstract double pointDist(double[] points, int offset, double[] location, double[] weights);
 
-	protected abstract double pointRegionDist(double[] point, double[] min, double[] max);
+	protected abstract double pointDist(float[] points, int offset, double[] location, double[] weights);
 
-	protected abstract double pointRegionMaxDist(double[] point, double[] min, double[] max);
+	protected abstract double pointRegionDist(double[] point, double[] min, double[] max, double[] weights);
+
+	protected abstract double pointRegionMaxDist(double[] point, double[] min, double[] max, double[] weights);
+
+	/**
+	 * Measures the first 'count' points stored in 'points' to 'location',
+	 * writing point i's distance to distances[i]. Subclasses may override this
+	 * to score several points at once, but must match pointDist exactly.
+	 */
+	protected void pointDists(double[] points, int count, double[] location, double[] weights, double[] distances)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			distances[i] = this.pointDist(points, i * this.dimensions, location, weights);
+		}
+	}
+
+	/**
+	 * The weights searches use when they don't supply their own
+	 */
+	protected double[] getDefaultWeights()
+	{
+		return null;
+	}
 
 	protected double getAxisWeightHint(int i)
 	{
 		return 1.0;
 	}
 
+	/**
+	 * Whether this thread is inside a search of this tree, as when a range
+	 * search's visitor searches again. Such a search can't rebuild the tree,
+	 * since the outer search's read lock can't be upgraded to a write lock.
+	 */
+	protected boolean isSearching()
+	{
+		return this.lock.getReadHoldCount() > 0;
+	}
+
 	/**
 	 * Get the number of points in the tree
 	 */
@@ -142,15 +272,96 @@ public abstract class KdTree<T>
 	}
 
 	/**
-	 * Add a point and associated value to the tree
+	 * Add a point and associated value to the tree. The coordinates are copied
+	 * into the tree, so the caller is free to reuse the array afterwards. Each
+	 * point gets the next insertion sequence number, starting from 0.
 	 */
 	public void addPoint(double[] location, T value)
+	{
+		this.lock.writeLock().lock();
+		try
+		{
+			this.modCount++;
+			long sequence = this.nextSequence++;
+			if (this.floatStorage)
+			{
+				for (int i = 0; i < this.dimensions; i++)
+				{
+					this.roundedPoint[i] = (float) location[i];
+				}
+				location = this.roundedPoint;
+			}
+			if (this.sizeLimit == null)
+			{
+				this.insert(location, 0, value, -1, sequence);
+			}
+			else
+			{
+				int slot = this.nextSlot;
+				this.nextSlot = (slot + 1) % this.slotIndexes.length;
+				this.insert(location, 0, value, slot, sequence);
+				if (this.locationCount > this.sizeLimit)
+				{
+					this.removeOld();
+					if (this.stats != null)
+					{
+						this.stats.addEviction();
+					}
+				}
+			}
+		}
+		finally
+		{
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets this thread's search context, or a fresh one if a search on this
+	 * thread is already using it
+	 */
+	private static SearchContext acquireContext()
+	{
+		SearchContext context = SEARCH_CONTEXT.get();
+		if (context.inUse)
+		{
+			context = new SearchContext();
+		}
+		context.inUse = true;
+		return context;
+	}
+
+	/**
+	 * Count searches, leaves, nodes and distance evaluations into 'stats', or
+	 * stop counting if it's null. Counting is skipped entirely when off.
+	 */
+	public void setStats(IndexStats stats)
+	{
+		this.stats = stats;
+	}
+
+	/**
+	 * Rebuild the tree from scratch once the number of points evicted since
+	 * the last rebuild exceeds 'rebuildRatio' times the current size. Zero
+	 * (the default) never rebuilds.
+	 */
+	public void setRebuildRatio(double rebuildRatio)
+	{
+		this.rebuildRatio = rebuildRatio;
+	}
+
+	/**
+	 * Inserts the point read from source[offset] onwards, without any size
+	 * limit bookkeeping. 'slot' is the point's ring slot, or -1 if the tree is
+	 * unbounded.
+	 */
+	private void insert(double[] source, int offset, Object value, int slot, long sequence)
 	{
 		KdTree<T> cursor = this;
 
-		while (cursor.locations == null || cursor.locationCount >= cursor.locations.length)
+		while (cursor.data == null || cursor.locationCount >= cursor.data.length)
 		{
-			if (cursor.locations != null)
+			if (cursor.data != null)
 			{
 				cursor.splitDimension = cursor.findWidestAxis();
 				cursor.splitValue = (cursor.minLimit[cursor.splitDimension] + cursor.maxLimit[cursor.splitDimension]) * 0.5;
@@ -173,12 +384,7 @@ public abstract class KdTree<T>
 				// bucket size instead
 				if (cursor.minLimit[cursor.splitDimension] == cursor.maxLimit[cursor.splitDimension])
 				{
-					double[][] newLocations = new double[cursor.locations.length * 2][];
-					System.arraycopy(cursor.locations, 0, newLocations, 0, cursor.locationCount);
-					cursor.locations = newLocations;
-					Object[] newData = new Object[newLocations.length];
-					System.arraycopy(cursor.data, 0, newData, 0, cursor.locationCount);
-					cursor.data = newData;
+					cursor.growBucket();
 					break;
 				}
 
@@ -189,6 +395,16 @@ public abstract class KdTree<T>
 					cursor.splitValue = cursor.minLimit[cursor.splitDimension];
 				}
 
+				// Nor split when every point would land on the same side, as
+				// happens when the bounds on the split axis are NaN. The child
+				// would just be split the same way again, forever.
+				int rightCount = cursor.countRightOfSplit();
+				if (rightCount == 0 || rightCount == cursor.locationCount)
+				{
+					cursor.growBucket();
+					break;
+				}
+
 				// Create child leaves
 				KdTree<T> leftLeaf = new ChildNode(cursor, false);
 				KdTree<T> rightLeaf = new ChildNode(cursor, true);
@@ -196,23 +412,17 @@ public abstract class KdTree<T>
 				// Move locations into children
 				for (int i = 0; i < cursor.locationCount; i++)
 				{
-					double[] oldLocation = cursor.locations[i];
-					Object oldData = cursor.data[i];
-					if (oldLocation[cursor.splitDimension] > cursor.splitValue)
+					double[] point = cursor.pointSource(i);
+					int pointOffset = cursor.pointOffset(i);
+					if (point[pointOffset + cursor.splitDimension] > cursor.splitValue)
 					{
 						// Right
-						rightLeaf.locations[rightLeaf.locationCount] = oldLocation;
-						rightLeaf.data[rightLeaf.locationCount] = oldData;
-						rightLeaf.locationCount++;
-						rightLeaf.extendBounds(oldLocation);
+						rightLeaf.appendPoint(point, pointOffset, cursor.data[i], cursor.slotAt(i), cursor.sequences[i]);
 					}
 					else
 					{
 						// Left
-						leftLeaf.locations[leftLeaf.locationCount] = oldLocation;
-						leftLeaf.data[leftLeaf.locationCount] = oldData;
-						leftLeaf.locationCount++;
-						leftLeaf.extendBounds(oldLocation);
+						leftLeaf.appendPoint(point, pointOffset, cursor.data[i], cursor.slotAt(i), cursor.sequences[i]);
 					}
 				}
 
@@ -220,13 +430,16 @@ public abstract class KdTree<T>
 				cursor.left = leftLeaf;
 				cursor.right = rightLeaf;
 				cursor.locations = null;
+				cursor.floatLocations = null;
 				cursor.data = null;
+				cursor.sequences = null;
+				cursor.slots = null;
 			}
 
 			cursor.locationCount++;
-			cursor.extendBounds(location);
+			cursor.extendBounds(source, offset);
 
-			if (location[cursor.splitDimension] > cursor.splitValue)
+			if (source[offset + cursor.splitDimension] > cursor.splitValue)
 			{
 				cursor = cursor.right;
 			}
@@ -236,51 +449,211 @@ public abstract class KdTree<T>
 			}
 		}
 
-		cursor.locations[cursor.locationCount] = location;
-		cursor.data[cursor.locationCount] = value;
-		cursor.locationCount++;
-		cursor.extendBounds(location);
+		cursor.appendPoint(source, offset, value, slot, sequence);
+	}
 
-		if (this.sizeLimit != null)
+	/**
+	 * Doubles the capacity of this leaf, for when it can't be split
+	 */
+	private void growBucket()
+	{
+		if (this.floatLocations != null)
+		{
+			this.floatLocations = Arrays.copyOf(this.floatLocations, this.floatLocations.length * 2);
+		}
+		else
 		{
-			this.locationStack.add(location);
-			if (this.locationCount > this.sizeLimit)
+			this.locations = Arrays.copyOf(this.locations, this.locations.length * 2);
+		}
+		Object[] newData = new Object[this.data.length * 2];
+		System.arraycopy(this.data, 0, newData, 0, this.locationCount);
+		this.data = newData;
+		this.sequences = Arrays.copyOf(this.sequences, newData.length);
+		if (this.slots != null)
+		{
+			this.slots = Arrays.copyOf(this.slots, newData.length);
+		}
+	}
+
+	/**
+	 * The number of this leaf's points that its split would send right
+	 */
+	private int countRightOfSplit()
+	{
+		int count = 0;
+		for (int i = 0; i < this.locationCount; i++)
+		{
+			if (this.pointSource(i)[this.pointOffset(i) + this.splitDimension] > this.splitValue)
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Copies a point into the next free position of this leaf, which must have
+	 * room for it
+	 */
+	private void appendPoint(double[] source, int offset, Object value, int slot, long sequence)
+	{
+		if (this.floatLocations != null)
+		{
+			int pointOffset = this.locationCount * this.dimensions;
+			for (int i = 0; i < this.dimensions; i++)
 			{
-				this.removeOld();
+				this.floatLocations[pointOffset + i] = (float) source[offset + i];
 			}
 		}
+		else
+		{
+			System.arraycopy(source, offset, this.locations, this.locationCount * this.dimensions, this.dimensions);
+		}
+		this.data[this.locationCount] = value;
+		this.sequences[this.locationCount] = sequence;
+		if (this.slots != null)
+		{
+			this.slots[this.locationCount] = slot;
+			this.root.slotLeaves[slot] = this;
+			this.root.slotIndexes[slot] = this.locationCount;
+		}
+		this.locationCount++;
+		this.extendBounds(source, offset);
 	}
 
 	/**
-	 * Extends the bounds of this node do include a new location
+	 * Allocates this leaf's coordinate storage for 'capacity' points
 	 */
-	private void extendBounds(double[] location)
+	private void allocateCoordinates(int capacity)
+	{
+		if (this.root.floatStorage)
+		{
+			this.floatLocations = new float[capacity * this.dimensions];
+		}
+		else
+		{
+			this.locations = new double[capacity * this.dimensions];
+		}
+	}
+
+	/**
+	 * An array holding the coordinates of the point at the given leaf index,
+	 * from pointOffset(index) onwards. Float coordinates are widened into the
+	 * root's scratch array, which is only valid until the next call.
+	 */
+	private double[] pointSource(int index)
+	{
+		if (this.floatLocations == null)
+		{
+			return this.locations;
+		}
+		double[] point = this.root.pointScratch;
+		int offset = index * this.dimensions;
+		for (int i = 0; i < this.dimensions; i++)
+		{
+			point[i] = this.floatLocations[offset + i];
+		}
+		return point;
+	}
+
+	private int pointOffset(int index)
+	{
+		return (this.floatLocations == null) ? index * this.dimensions : 0;
+	}
+
+	/**
+	 * Distance from the point at the given index of 'leaf' to 'location'
+	 */
+	private double leafDist(KdTree<T> leaf, int index, double[] location, double[] weights)
+	{
+		if (leaf.floatLocations != null)
+		{
+			return this.pointDist(leaf.floatLocations, index * this.dimensions, location, weights);
+		}
+		return this.pointDist(leaf.locations, index * this.dimensions, location, weights);
+	}
+
+	/**
+	 * Distances from each point in a leaf to 'location', written to the
+	 * context's scratch array, which is returned
+	 */
+	private double[] leafDists(SearchContext context, KdTree<T> leaf, double[] location, double[] weights)
+	{
+		if (context.leafDistances.length < leaf.locationCount)
+		{
+			context.leafDistances = new double[Math.max(leaf.locationCount, context.leafDistances.length * 2)];
+		}
+		double[] distances = context.leafDistances;
+		if (leaf.floatLocations != null)
+		{
+			for (int i = 0; i < leaf.locationCount; i++)
+			{
+				distances[i] = this.pointDist(leaf.floatLocations, i * this.dimensions, location, weights);
+			}
+		}
+		else
+		{
+			this.pointDists(leaf.locations, leaf.locationCount, location, weights, distances);
+		}
+		return distances;
+	}
+
+	/**
+	 * The ring slot of the point at the given leaf index, or -1 if the tree is
+	 * unbounded
+	 */
+	private int slotAt(int index)
+	{
+		return this.slots == null ? -1 : this.slots[index];
+	}
+
+	/**
+	 * Points every slot held by this leaf back at its current position
+	 */
+	private void claimSlots()
+	{
+		if (this.slots != null)
+		{
+			for (int i = 0; i < this.locationCount; i++)
+			{
+				this.root.slotLeaves[this.slots[i]] = this;
+				this.root.slotIndexes[this.slots[i]] = i;
+			}
+		}
+	}
+
+	/**
+	 * Extends the bounds of this node do include a new location, read from
+	 * source[offset] onwards
+	 */
+	private void extendBounds(double[] source, int offset)
 	{
 		if (this.minLimit == null)
 		{
 			this.minLimit = new double[this.dimensions];
-			System.arraycopy(location, 0, this.minLimit, 0, this.dimensions);
+			System.arraycopy(source, offset, this.minLimit, 0, this.dimensions);
 			this.maxLimit = new double[this.dimensions];
-			System.arraycopy(location, 0, this.maxLimit, 0, this.dimensions);
+			System.arraycopy(source, offset, this.maxLimit, 0, this.dimensions);
 			return;
 		}
 
 		for (int i = 0; i < this.dimensions; i++)
 		{
-			if (Double.isNaN(location[i]))
+			double value = source[offset + i];
+			if (Double.isNaN(value))
 			{
 				this.minLimit[i] = Double.NaN;
 				this.maxLimit[i] = Double.NaN;
 				this.singularity = false;
 			}
-			else if (this.minLimit[i] > location[i])
+			else if (this.minLimit[i] > value)
 			{
-				this.minLimit[i] = location[i];
+				this.minLimit[i] = value;
 				this.singularity = false;
 			}
-			else if (this.maxLimit[i] < location[i])
+			else if (this.maxLimit[i] < value)
 			{
-				this.maxLimit[i] = location[i];
+				this.maxLimit[i] = value;
 				this.singularity = false;
 			}
 		}
@@ -310,46 +683,233 @@ public abstract class KdTree<T>
 	}
 
 	/**
-	 * Remove the oldest value from the tree. Note: This cannot trim the bounds
-	 * of nodes, nor empty nodes, and thus you can't expect it to perfectly
-	 * preserve the speed of the tree as you keep adding.
+	 * Remove the oldest value from the tree. Its slot leads straight to its
+	 * leaf entry, which is filled with the leaf's last point. Counts and bounds
+	 * are then updated all the way up to the root, a stem left with one empty
+	 * side is replaced by the other side, and a stem that has shrunk to half a
+	 * bucket is flattened back into a leaf.
 	 */
 	private void removeOld()
 	{
-		double[] location = this.locationStack.removeFirst();
-		KdTree<T> cursor = this;
+		int capacity = this.slotIndexes.length;
+		int slot = (this.nextSlot - this.locationCount + capacity) % capacity;
+		KdTree<T> cursor = this.slotLeaves[slot];
+		int i = this.slotIndexes[slot];
+		this.slotLeaves[slot] = null;
 
-		// Find the node where the point is
-		while (cursor.locations == null)
+		int last = cursor.locationCount - 1;
+		if (i != last)
 		{
-			if (location[cursor.splitDimension] > cursor.splitValue)
+			if (cursor.floatLocations != null)
 			{
-				cursor = cursor.right;
+				System.arraycopy(cursor.floatLocations, last * this.dimensions, cursor.floatLocations, i * this.dimensions,
+						this.dimensions);
 			}
 			else
 			{
-				cursor = cursor.left;
+				System.arraycopy(cursor.locations, last * this.dimensions, cursor.locations, i * this.dimensions,
+						this.dimensions);
 			}
+			cursor.data[i] = cursor.data[last];
+			cursor.sequences[i] = cursor.sequences[last];
+			cursor.slots[i] = cursor.slots[last];
+			this.slotIndexes[cursor.slots[i]] = i;
 		}
+		cursor.data[last] = null;
+		cursor.locationCount--;
+		cursor.recalculateBounds();
 
-		for (int i = 0; i < cursor.locationCount; i++)
+		for (cursor = cursor.parent; cursor != null; cursor = cursor.parent)
 		{
-			if (cursor.locations[i] == location)
+			cursor.locationCount--;
+			if (cursor.left.locationCount == 0)
+			{
+				cursor.replaceWith(cursor.right);
+			}
+			else if (cursor.right.locationCount == 0)
+			{
+				cursor.replaceWith(cursor.left);
+			}
+			else if (cursor.locationCount <= BUCKET_SIZE / 2)
 			{
-				System.arraycopy(cursor.locations, i + 1, cursor.locations, i, cursor.locationCount - i - 1);
-				cursor.locations[cursor.locationCount - 1] = null;
-				System.arraycopy(cursor.data, i + 1, cursor.data, i, cursor.locationCount - i - 1);
-				cursor.data[cursor.locationCount - 1] = null;
-				do
+				cursor.flatten();
+			}
+			else
+			{
+				cursor.recalculateBounds();
+			}
+		}
+
+		this.evictionsSinceRebuild++;
+		if (this.rebuildRatio > 0 && this.evictionsSinceRebuild > this.rebuildRatio * this.locationCount)
+		{
+			this.rebuild();
+		}
+	}
+
+	/**
+	 * Recalculates the bounds of this node from its points, if it's a leaf, or
+	 * from its children's bounds, if it's a stem
+	 */
+	private void recalculateBounds()
+	{
+		this.minLimit = null;
+		this.maxLimit = null;
+		this.singularity = true;
+		if (this.data != null)
+		{
+			for (int i = 0; i < this.locationCount; i++)
+			{
+				this.extendBounds(this.pointSource(i), this.pointOffset(i));
+			}
+		}
+		else
+		{
+			this.extendBounds(this.left.minLimit, 0);
+			this.extendBounds(this.left.maxLimit, 0);
+			this.extendBounds(this.right.minLimit, 0);
+			this.extendBounds(this.right.maxLimit, 0);
+			this.singularity = this.singularity && this.left.singularity && this.right.singularity;
+		}
+	}
+
+	/**
+	 * Takes over the contents of a child node, removing a level from the tree
+	 */
+	private void replaceWith(KdTree<T> child)
+	{
+		this.locations = child.locations;
+		this.floatLocations = child.floatLocations;
+		this.data = child.data;
+		this.sequences = child.sequences;
+		this.slots = child.slots;
+		this.left = child.left;
+		this.right = child.right;
+		this.splitDimension = child.splitDimension;
+		this.splitValue = child.splitValue;
+		this.minLimit = child.minLimit;
+		this.maxLimit = child.maxLimit;
+		this.singularity = child.singularity;
+		if (this.left != null)
+		{
+			this.left.parent = this;
+			this.right.parent = this;
+		}
+		else
+		{
+			this.claimSlots();
+		}
+	}
+
+	/**
+	 * Turns this stem back into a single leaf holding all of its points
+	 */
+	private void flatten()
+	{
+		double[] newLocations = new double[Math.max(BUCKET_SIZE, this.locationCount) * this.dimensions];
+		Object[] newData = new Object[Math.max(BUCKET_SIZE, this.locationCount)];
+		long[] newSequences = new long[newData.length];
+		int[] newSlots = (this.root.slotLeaves == null) ? null : new int[newData.length];
+		this.gatherPoints(newLocations, newData, newSequences, newSlots, 0);
+		if (this.root.floatStorage)
+		{
+			this.floatLocations = new float[newLocations.length];
+			for (int i = 0; i < this.locationCount * this.dimensions; i++)
+			{
+				this.floatLocations[i] = (float) newLocations[i];
+			}
+		}
+		else
+		{
+			this.locations = newLocations;
+		}
+		this.data = newData;
+		this.sequences = newSequences;
+		this.slots = newSlots;
+		this.left = null;
+		this.right = null;
+		this.claimSlots();
+		this.recalculateBounds();
+	}
+
+	/**
+	 * Copies every point under this node into the given arrays, starting at
+	 * index 'start', and returns the index after the last point copied. Float
+	 * coordinates are widened to doubles.
+	 */
+	private int gatherPoints(double[] toLocations, Object[] toData, long[] toSequences, int[] toSlots, int start)
+	{
+		if (this.data != null)
+		{
+			if (this.floatLocations != null)
+			{
+				int toOffset = start * this.dimensions;
+				for (int i = 0; i < this.locationCount * this.dimensions; i++)
 				{
-					cursor.locationCount--;
-					cursor = cursor.parent;
+					toLocations[toOffset + i] = this.floatLocations[i];
 				}
-				while (cursor != null && cursor.parent != null);
-				return;
 			}
+			else
+			{
+				System.arraycopy(this.locations, 0, toLocations, start * this.dimensions,
+						this.locationCount * this.dimensions);
+			}
+			System.arraycopy(this.data, 0, toData, start, this.locationCount);
+			System.arraycopy(this.sequences, 0, toSequences, start, this.locationCount);
+			if (toSlots != null)
+			{
+				System.arraycopy(this.slots, 0, toSlots, start, this.locationCount);
+			}
+			return start + this.locationCount;
 		}
-		// If we got here... we couldn't find the value to remove. Weird...
+		return this.right.gatherPoints(toLocations, toData, toSequences, toSlots,
+				this.left.gatherPoints(toLocations, toData, toSequences, toSlots, start));
+	}
+
+	/**
+	 * Rebuilds the whole tree from its current points, discarding split
+	 * positions that were chosen for data that has since been evicted, or
+	 * under axis weights that have since changed
+	 */
+	protected void rebuild()
+	{
+		this.lock.writeLock().lock();
+		try
+		{
+			this.rebuildLocked();
+		}
+		finally
+		{
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	private void rebuildLocked()
+	{
+		this.modCount++;
+		int count = this.locationCount;
+		double[] allLocations = new double[count * this.dimensions];
+		Object[] allData = new Object[count];
+		long[] allSequences = new long[count];
+		int[] allSlots = (this.slotLeaves == null) ? null : new int[count];
+		this.gatherPoints(allLocations, allData, allSequences, allSlots, 0);
+
+		this.allocateCoordinates(BUCKET_SIZE);
+		this.data = new Object[BUCKET_SIZE];
+		this.sequences = new long[BUCKET_SIZE];
+		this.slots = (allSlots == null) ? null : new int[BUCKET_SIZE];
+		this.locationCount = 0;
+		this.left = null;
+		this.right = null;
+		this.minLimit = null;
+		this.maxLimit = null;
+		this.singularity = true;
+		for (int i = 0; i < count; i++)
+		{
+			this.insert(allLocations, i * this.dimensions, allData[i], (allSlots == null) ? -1 : allSlots[i],
+					allSequences[i]);
+		}
+		this.evictionsSinceRebuild = 0;
 	}
 
 	/**
@@ -357,109 +917,429 @@ public abstract class KdTree<T>
 	 */
 	public List<Entry<T>> nearestNeighbor(double[] location, int count, boolean sequentialSorting)
 	{
-		KdTree<T> cursor = this;
-		cursor.status = Status.NONE;
-		double range = Double.POSITIVE_INFINITY;
+		return this.nearestNeighbor(location, count, sequentialSorting, this.getDefaultWeights());
+	}
+
+	/**
+	 * Calculates the nearest 'count' points to 'location', measuring distance
+	 * with the given per-axis weights. Bounds are geometric, so pruning is
+	 * exact for any positive weights, whatever weights the splits were chosen
+	 * under.
+	 */
+	public List<Entry<T>> nearestNeighbor(double[] location, int count, boolean sequentialSorting, double[] weights)
+	{
 		ResultHeap resultHeap = new ResultHeap(count);
+		this.nearestNeighbor(location, count, weights, resultHeap);
+
+		ArrayList<Entry<T>> results = new ArrayList<>(resultHeap.getValues());
+		this.addResult(results, resultHeap, sequentialSorting);
+		return results;
+	}
 
-		do
+	/**
+	 * Calculates the nearest 'count' points to 'location', writing them into
+	 * 'resultHeap' instead of allocating a result list. The heap is reset
+	 * first, so callers can keep one and reuse it for every search.
+	 */
+	public void nearestNeighbor(double[] location, int count, ResultHeap resultHeap)
+	{
+		this.nearestNeighbor(location, count, this.getDefaultWeights(), resultHeap);
+	}
+
+	/**
+	 * Calculates the nearest 'count' points to 'location', measuring distance
+	 * with the given per-axis weights and writing them into 'resultHeap'
+	 */
+	public void nearestNeighbor(double[] location, int count, double[] weights, ResultHeap resultHeap)
+	{
+		this.search(location, count, weights, resultHeap, 1, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Approximate nearest neighbor search. Nodes are skipped unless they could
+	 * hold a point more than (1 + 'epsilon') times closer than the current
+	 * 'count'-th nearest, measured in this tree's distance (squared distance
+	 * for the Euclidean trees), and the search stops after scanning
+	 * 'maxLeaves' leaves. Leaves nearest the query are scanned first.
+	 */
+	@Override
+	public void nearestNeighborApprox(double[] location, int count, double[] weights, ResultHeap resultHeap,
+			double epsilon, int maxLeaves)
+	{
+		this.search(location, count, weights, resultHeap, 1 + epsilon, maxLeaves);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void search(double[] location, int count, double[] weights, ResultHeap resultHeap, double pruneFactor,
+			int maxLeaves)
+	{
+		resultHeap.reset(count);
+		SearchContext context = acquireContext();
+		this.lock.readLock().lock();
+		try
 		{
-			if (cursor.status == Status.ALLVISITED)
+			// Depth first, nearer child first, pruning each node against the
+			// current k-th distance when it comes off the stack
+			Object[] stack = context.stack;
+			int depth = 0;
+			int leaves = 0;
+			int nodes = 0;
+			int evaluated = 0;
+			stack[depth++] = this;
+			while (depth > 0 && leaves < maxLeaves)
 			{
-				// At a fully visited part. Move up the tree
-				cursor = cursor.parent;
-				continue;
-			}
+				depth--;
+				KdTree<T> cursor = (KdTree<T>) stack[depth];
+				stack[depth] = null;
+				nodes++;
 
-			if (cursor.status == Status.NONE && cursor.locations != null)
-			{
-				// At a leaf. Use the data.
-				if (cursor.locationCount > 0)
+				if (cursor.locationCount == 0 || (!cursor.singularity && this.pointRegionDist(location,
+						cursor.minLimit, cursor.maxLimit, weights) * pruneFactor > resultHeap.getMaxDist()))
+				{
+					continue;
+				}
+
+				if (cursor.data != null)
 				{
+					leaves++;
+					evaluated += cursor.singularity ? 1 : cursor.locationCount;
+					// At a leaf. Use the data.
 					if (cursor.singularity)
 					{
-						double dist = this.pointDist(cursor.locations[0], location);
-						if (dist <= range)
+						double dist = this.leafDist(cursor, 0, location, weights);
+						if (dist <= resultHeap.getMaxDist())
 						{
 							for (int i = 0; i < cursor.locationCount; i++)
 							{
-								resultHeap.addValue(dist, cursor.data[i]);
+								resultHeap.addValue(dist, cursor.data[i], cursor.sequences[i]);
 							}
 						}
 					}
 					else
 					{
+						double[] distances = this.leafDists(context, cursor, location, weights);
 						for (int i = 0; i < cursor.locationCount; i++)
 						{
-							double dist = this.pointDist(cursor.locations[i], location);
-							resultHeap.addValue(dist, cursor.data[i]);
+							resultHeap.addValue(distances[i], cursor.data[i], cursor.sequences[i]);
 						}
 					}
-					range = resultHeap.getMaxDist();
+					continue;
 				}
 
-				if (cursor.parent == null)
+				if (depth + 2 > stack.length)
 				{
-					break;
+					stack = Arrays.copyOf(stack, stack.length * 2);
+					context.stack = stack;
+				}
+				if (location[cursor.splitDimension] > cursor.splitValue)
+				{
+					stack[depth++] = cursor.left;
+					stack[depth++] = cursor.right;
+				}
+				else
+				{
+					stack[depth++] = cursor.right;
+					stack[depth++] = cursor.left;
 				}
-				cursor = cursor.parent;
-				continue;
 			}
+			Arrays.fill(stack, 0, depth, null);
+			if (this.stats != null)
+			{
+				this.stats.addSearches(1, nodes, leaves, evaluated);
+			}
+		}
+		finally
+		{
+			this.lock.readLock().unlock();
+			context.inUse = false;
+		}
+	}
 
-			// Going to descend
-			KdTree<T> nextCursor = null;
-			if (cursor.status == Status.NONE)
+	/**
+	 * Finds every point within 'radius' of 'location', in this tree's distance
+	 * (squared distance for the Euclidean trees)
+	 */
+	public List<Entry<T>> rangeSearch(double[] location, double radius)
+	{
+		List<Entry<T>> results = new ArrayList<>();
+		this.rangeSearch(location, radius, this.getDefaultWeights(), Integer.MAX_VALUE,
+				(distance, value) -> results.add(new Entry<>(distance, value)));
+		return results;
+	}
+
+	/**
+	 * Passes each point within 'radius' of 'location', measured with the given
+	 * per-axis weights, to 'visitor', stopping after 'maxCount' points. Points
+	 * come nearer leaves first but are otherwise unsorted. The visitor may
+	 * search this tree, though those searches never rebuild it, but must not
+	 * add to it. Returns the number of points visited.
+	 */
+	@SuppressWarnings("unchecked")
+	public int rangeSearch(double[] location, double radius, double[] weights, int maxCount,
+			NeighborVisitor<? super T> visitor)
+	{
+		SearchContext context = acquireContext();
+		this.lock.readLock().lock();
+		int visited = 0;
+		try
+		{
+			Object[] stack = context.stack;
+			int depth = 0;
+			int leaves = 0;
+			int nodes = 0;
+			int evaluated = 0;
+			stack[depth++] = this;
+			while (depth > 0 && visited < maxCount)
 			{
-				// At a fresh node, descend the most probably useful direction
+				depth--;
+				KdTree<T> cursor = (KdTree<T>) stack[depth];
+				stack[depth] = null;
+				nodes++;
+
+				if (cursor.locationCount == 0 || (!cursor.singularity
+						&& this.pointRegionDist(location, cursor.minLimit, cursor.maxLimit, weights) > radius))
+				{
+					continue;
+				}
+
+				if (cursor.data != null)
+				{
+					leaves++;
+					evaluated += cursor.singularity ? 1 : cursor.locationCount;
+					if (cursor.singularity)
+					{
+						double dist = this.leafDist(cursor, 0, location, weights);
+						for (int i = 0; dist <= radius && i < cursor.locationCount && visited < maxCount; i++)
+						{
+							visitor.visit(dist, (T) cursor.data[i]);
+							visited++;
+						}
+					}
+					else
+					{
+						double[] distances = this.leafDists(context, cursor, location, weights);
+						for (int i = 0; i < cursor.locationCount && visited < maxCount; i++)
+						{
+							if (distances[i] <= radius)
+							{
+								visitor.visit(distances[i], (T) cursor.data[i]);
+								visited++;
+							}
+						}
+					}
+					continue;
+				}
+
+				if (depth + 2 > stack.length)
+				{
+					stack = Arrays.copyOf(stack, stack.length * 2);
+					context.stack = stack;
+				}
 				if (location[cursor.splitDimension] > cursor.splitValue)
 				{
-					// Descend right
-					nextCursor = cursor.right;
-					cursor.status = Status.RIGHTVISITED;
+					stack[depth++] = cursor.left;
+					stack[depth++] = cursor.right;
 				}
 				else
 				{
-					// Descend left;
-					nextCursor = cursor.left;
-					cursor.status = Status.LEFTVISITED;
+					stack[depth++] = cursor.right;
+					stack[depth++] = cursor.left;
 				}
 			}
-			else if (cursor.status == Status.LEFTVISITED)
+			Arrays.fill(stack, 0, depth, null);
+			if (this.stats != null)
 			{
-				// Left node visited, descend right.
-				nextCursor = cursor.right;
-				cursor.status = Status.ALLVISITED;
+				this.stats.addSearches(1, nodes, leaves, evaluated);
 			}
-			else if (cursor.status == Status.RIGHTVISITED)
+		}
+		finally
+		{
+			this.lock.readLock().unlock();
+			context.inUse = false;
+		}
+		return visited;
+	}
+
+	/**
+	 * Iterates over the points nearest to 'location' first, using the default
+	 * weights
+	 */
+	public Iterator<Entry<T>> nearestNeighborIterator(double[] location)
+	{
+		return this.nearestNeighborIterator(location, this.getDefaultWeights());
+	}
+
+	/**
+	 * Iterates over the points in order of distance from 'location', measured
+	 * with the given per-axis weights, nearest first. Nodes are expanded best
+	 * first and only when the next point is needed, so stopping early skips
+	 * the rest of the search. The tree must not be added to or rebuilt while
+	 * iterating; next() throws ConcurrentModificationException if it was.
+	 */
+	@Override
+	public Iterator<Entry<T>> nearestNeighborIterator(double[] location, double[] weights)
+	{
+		this.lock.readLock().lock();
+		try
+		{
+			return new NeighborIterator(location, weights);
+		}
+		finally
+		{
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Calculates the nearest 'counts[q]' points to each 'locations[q]' in one
+	 * shared pass over the tree, writing them into 'results[q]'. Queries that
+	 * agree on which way to descend walk the tree together, and each node's
+	 * bounds are tested once per query still interested in it. The result
+	 * heaps are reset first, so callers can keep and reuse them.
+	 */
+	public void nearestNeighborBatch(double[][] locations, int[] counts, ResultHeap[] results)
+	{
+		this.nearestNeighborBatch(locations, counts, results, this.getDefaultWeights());
+	}
+
+	/**
+	 * Batched search measuring distance with the given per-axis weights
+	 */
+	public void nearestNeighborBatch(double[][] locations, int[] counts, ResultHeap[] results, double[] weights)
+	{
+		int queries = locations.length;
+		SearchContext context = acquireContext();
+		this.lock.readLock().lock();
+		try
+		{
+			if (context.batchWork.length < queries * 2)
 			{
-				// Right node visited, descend left.
-				nextCursor = cursor.left;
-				cursor.status = Status.ALLVISITED;
+				context.batchWork = new int[queries * 2];
 			}
-
-			// Check if it's worth descending. Assume it is if it's sibling has
-			// not been visited yet.
-			if (cursor.status == Status.ALLVISITED)
+			for (int q = 0; q < queries; q++)
 			{
-				if (nextCursor != null && (nextCursor.locationCount == 0
-						|| (!nextCursor.singularity && this.pointRegionDist(location, nextCursor.minLimit, nextCursor.maxLimit) > range))) {
-					continue;
-				}
+				results[q].reset(counts[q]);
+				context.batchWork[q] = q;
 			}
+			context.nodes = 0;
+			context.leaves = 0;
+			context.distances = 0;
+			this.batchSearch(context, this, locations, results, weights, 0, queries, queries);
+			if (this.stats != null)
+			{
+				this.stats.addSearches(queries, context.nodes, context.leaves, context.distances);
+			}
+		}
+		finally
+		{
+			this.lock.readLock().unlock();
+			context.inUse = false;
+		}
+	}
+
+	/**
+	 * Calculates the nearest 'counts[q]' points to each 'locations[q]' in one
+	 * pass, using the given heaps as scratch space
+	 */
+	public List<List<Entry<T>>> nearestNeighborBatch(double[][] locations, int[] counts, ResultHeap[] results,
+			boolean sequentialSorting)
+	{
+		this.nearestNeighborBatch(locations, counts, results);
+		List<List<Entry<T>>> allResults = new ArrayList<>(locations.length);
+		for (int q = 0; q < locations.length; q++)
+		{
+			allResults.add(this.addResult(new ArrayList<>(results[q].getValues()), results[q], sequentialSorting));
+		}
+		return allResults;
+	}
 
-			// Descend down the tree
-			cursor = nextCursor;
-			if (cursor != null) {
-				cursor.status = Status.NONE;
+	/**
+	 * Visits 'node' for the queries listed in the context's batchWork[from ..
+	 * from + count), using batchWork from 'top' onwards as scratch space
+	 */
+	private void batchSearch(SearchContext context, KdTree<T> node, double[][] locations, ResultHeap[] results,
+			double[] weights, int from, int count, int top)
+	{
+		if (node.locationCount == 0)
+		{
+			return;
+		}
+
+		if (context.batchWork.length < top + count)
+		{
+			context.batchWork = Arrays.copyOf(context.batchWork, Math.max(top + count, context.batchWork.length * 2));
+		}
+		int[] work = context.batchWork;
+
+		// Keep only the queries this node could still improve
+		int active = 0;
+		for (int i = from; i < from + count; i++)
+		{
+			int q = work[i];
+			if (node.singularity
+					|| this.pointRegionDist(locations[q], node.minLimit, node.maxLimit, weights) <= results[q].getMaxDist())
+			{
+				work[top + active] = q;
+				active++;
 			}
 		}
-		while (cursor.parent != null || cursor.status != Status.ALLVISITED);
+		if (active == 0)
+		{
+			return;
+		}
+		context.nodes++;
 
-		ArrayList<Entry<T>> results = new ArrayList<>(resultHeap.getValues());
-		this.addResult(results, resultHeap, sequentialSorting);
+		if (node.data != null)
+		{
+			// At a leaf. Score it against every remaining query.
+			context.leaves++;
+			context.distances += active * (node.singularity ? 1 : node.locationCount);
+			for (int i = top; i < top + active; i++)
+			{
+				double[] location = locations[work[i]];
+				ResultHeap resultHeap = results[work[i]];
+				if (node.singularity)
+				{
+					double dist = this.leafDist(node, 0, location, weights);
+					if (dist <= resultHeap.getMaxDist())
+					{
+						for (int j = 0; j < node.locationCount; j++)
+						{
+							resultHeap.addValue(dist, node.data[j], node.sequences[j]);
+						}
+					}
+				}
+				else
+				{
+					double[] distances = this.leafDists(context, node, location, weights);
+					for (int j = 0; j < node.locationCount; j++)
+					{
+						resultHeap.addValue(distances[j], node.data[j], node.sequences[j]);
+					}
+				}
+			}
+			return;
+		}
 
+		// Partition into queries that prefer the left child, then the right
+		int leftCount = 0;
+		for (int i = top; i < top + active; i++)
+		{
+			int q = work[i];
+			if (locations[q][node.splitDimension] <= node.splitValue)
+			{
+				work[i] = work[top + leftCount];
+				work[top + leftCount] = q;
+				leftCount++;
+			}
+		}
 
-		return results;
+		// Each group descends its nearer side first, then the far side
+		int next = top + active;
+		this.batchSearch(context, node.left, locations, results, weights, top, leftCount, next);
+		this.batchSearch(context, node.right, locations, results, weights, top + leftCount, active - leftCount, next);
+		this.batchSearch(context, node.right, locations, results, weights, top, leftCount, next);
+		this.batchSearch(context, node.left, locations, results, weights, top + leftCount, active - leftCount, next);
 	}
 
 	private List<Entry<T>> addResult(List<Entry<T>> results, ResultHeap resultHeap, boolean sequentialSorting) {
@@ -468,20 +1348,113 @@ public abstract class KdTree<T>
 			while (resultHeap.getValues() > 0)
 			{
 				resultHeap.removeLargest();
-				results.add(new Entry<>(resultHeap.getRemovedDist(), (T) resultHeap.getRemovedData()));
+				results.add(new Entry<>(resultHeap.getRemovedDist(), (T) resultHeap.getRemovedData(),
+						resultHeap.getRemovedSequence()));
 			}
 		}
 		else
 		{
 			for (int i = 0; i < resultHeap.getValues(); i++)
 			{
-				results.add(new Entry<>(resultHeap.getDistance()[i], (T) resultHeap.getData()[i]));
+				results.add(new Entry<>(resultHeap.getDistance()[i], (T) resultHeap.getData()[i],
+						resultHeap.getSequence()[i]));
 			}
 		}
 
 		return results;
 	}
 
+	/**
+	 * Best first traversal for nearestNeighborIterator. Pending nodes are
+	 * keyed by their distance bound and scored points by their distance; a
+	 * point is returned once no pending node could hold anything nearer.
+	 */
+	private class NeighborIterator implements Iterator<Entry<T>>
+	{
+		private double[] location;
+		private double[] weights;
+		private MinBinaryHeap<KdTree<T>> pendingNodes;
+		private MinBinaryHeap<Entry<T>> evaluatedPoints;
+		private int expectedModCount;
+
+		NeighborIterator(double[] location, double[] weights)
+		{
+			this.location = location.clone();
+			this.weights = weights;
+			this.pendingNodes = new MinBinaryHeap<>();
+			this.evaluatedPoints = new MinBinaryHeap<>();
+			this.expectedModCount = KdTree.this.modCount;
+			this.offerNode(KdTree.this);
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			// Empty nodes are never queued, so a pending node means more points
+			return this.evaluatedPoints.size() > 0 || this.pendingNodes.size() > 0;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Entry<T> next()
+		{
+			if (!this.hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+
+			KdTree.this.lock.readLock().lock();
+			try
+			{
+				if (KdTree.this.modCount != this.expectedModCount)
+				{
+					throw new ConcurrentModificationException();
+				}
+
+				while (this.pendingNodes.size() > 0 && (this.evaluatedPoints.size() == 0
+						|| this.pendingNodes.getMinKey() < this.evaluatedPoints.getMinKey()))
+				{
+					KdTree<T> cursor = this.pendingNodes.getMin();
+					this.pendingNodes.removeMin();
+					if (cursor.data == null)
+					{
+						this.offerNode(cursor.left);
+						this.offerNode(cursor.right);
+						continue;
+					}
+
+					double dist = 0;
+					for (int i = 0; i < cursor.locationCount; i++)
+					{
+						if (i == 0 || !cursor.singularity)
+						{
+							dist = KdTree.this.leafDist(cursor, i, this.location, this.weights);
+						}
+						this.evaluatedPoints.offer(dist, new Entry<>(dist, (T) cursor.data[i], cursor.sequences[i]));
+					}
+				}
+			}
+			finally
+			{
+				KdTree.this.lock.readLock().unlock();
+			}
+
+			Entry<T> nearest = this.evaluatedPoints.getMin();
+			this.evaluatedPoints.removeMin();
+			return nearest;
+		}
+
+		private void offerNode(KdTree<T> node)
+		{
+			if (node.locationCount == 0)
+			{
+				return;
+			}
+			this.pendingNodes.offer(
+					KdTree.this.pointRegionDist(this.location, node.minLimit, node.maxLimit, this.weights), node);
+		}
+	}
+
 	/**
 	 * Internal class for child nodes
 	 */
@@ -494,19 +1467,25 @@ public abstract class KdTree<T>
 
 		// Distance measurements are always called from the root node
 		@Override
-		protected double pointDist(double[] p1, double[] p2)
+		protected double pointDist(double[] points, int offset, double[] location, double[] weights)
+		{
+			throw new IllegalStateException();
+		}
+
+		@Override
+		protected double pointDist(float[] points, int offset, double[] location, double[] weights)
 		{
 			throw new IllegalStateException();
 		}
 
 		@Override
-		protected double pointRegionDist(double[] point, double[] min, double[] max)
+		protected double pointRegionDist(double[] point, double[] min, double[] max, double[] weights)
 		{
 			throw new IllegalStateException();
 		}
 
 		@Override
-		protected double pointRegionMaxDist(double[] point, double[] min, double[] max)
+		protected double pointRegionMaxDist(double[] point, double[] min, double[] max, double[] weights)
 		{
 			throw new IllegalStateException();
 		}
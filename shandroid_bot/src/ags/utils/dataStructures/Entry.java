@@ -1,17 +1,25 @@
 package ags.utils.dataStructures;
 
 /**
- * Stores a distance and value to output
+ * Stores a distance and value to output, and the value's insertion sequence
+ * number in the tree it came from
  */
 public class Entry<T>
 {
 	private double distance;
 	private T value;
+	private long sequence;
 
 	public Entry(double distance, T value)
+	{
+		this(distance, value, 0);
+	}
+
+	public Entry(double distance, T value, long sequence)
 	{
 		this.distance = distance;
 		this.value = value;
+		this.sequence = sequence;
 	}
 
 	/**
@@ -47,4 +55,21 @@ public class Entry<T>
 	{
 		this.value = value;
 	}
+
+	/**
+	 * @return the sequence
+	 */
+	public long getSequence()
+	{
+		return this.sequence;
+	}
+
+	/**
+	 * @param sequence
+	 *            the sequence to set
+	 */
+	public void setSequence(long sequence)
+	{
+		this.sequence = sequence;
+	}
 }
\ No newline at end of file
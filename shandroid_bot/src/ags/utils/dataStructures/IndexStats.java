@@ -0,0 +1,82 @@
+package ags.utils.dataStructures;
+
+/**
+ * Running totals of the work done by a nearest neighbor index. An index only
+ * counts while it has one of these attached, and concurrent searches may
+ * undercount slightly.
+ */
+public class IndexStats
+{
+	private long searches;
+	private long nodesVisited;
+	private long leavesVisited;
+	private long distanceEvaluations;
+	private long inserts;
+	private long evictions;
+
+	public void addSearches(int searches, int nodes, int leaves, int distances)
+	{
+		this.searches += searches;
+		this.nodesVisited += nodes;
+		this.leavesVisited += leaves;
+		this.distanceEvaluations += distances;
+	}
+
+	public void addInsert()
+	{
+		this.inserts++;
+	}
+
+	public void addEviction()
+	{
+		this.evictions++;
+	}
+
+	/**
+	 * @return the searches
+	 */
+	public long getSearches()
+	{
+		return this.searches;
+	}
+
+	/**
+	 * @return the nodesVisited
+	 */
+	public long getNodesVisited()
+	{
+		return this.nodesVisited;
+	}
+
+	/**
+	 * @return the leavesVisited
+	 */
+	public long getLeavesVisited()
+	{
+		return this.leavesVisited;
+	}
+
+	/**
+	 * @return the distanceEvaluations
+	 */
+	public long getDistanceEvaluations()
+	{
+		return this.distanceEvaluations;
+	}
+
+	/**
+	 * @return the inserts
+	 */
+	public long getInserts()
+	{
+		return this.inserts;
+	}
+
+	/**
+	 * @return the evictions
+	 */
+	public long getEvictions()
+	{
+		return this.evictions;
+	}
+}
@@ -13,13 +13,13 @@ public class Manhattan<T> extends KdTree<T>
 	}
 
 	@Override
-	protected double pointDist(double[] p1, double[] p2)
+	protected double pointDist(double[] points, int offset, double[] location, double[] weights)
 	{
 		double d = 0;
 
-		for (int i = 0; i < p1.length; i++)
+		for (int i = 0; i < location.length; i++)
 		{
-			double diff = (p1[i] - p2[i]);
+			double diff = (points[offset + i] - location[i]);
 			if (!Double.isNaN(diff))
 			{
 				d += (diff < 0) ? -diff : diff;
@@ -30,7 +30,24 @@ public class Manhattan<T> extends KdTree<T>
 	}
 
 	@Override
-	protected double pointRegionDist(double[] point, double[] min, double[] max)
+	protected double pointDist(float[] points, int offset, double[] location, double[] weights)
+	{
+		double d = 0;
+
+		for (int i = 0; i < location.length; i++)
+		{
+			double diff = (points[offset + i] - location[i]);
+			if (!Double.isNaN(diff))
+			{
+				d += (diff < 0) ? -diff : diff;
+			}
+		}
+
+		return d;
+	}
+
+	@Override
+	protected double pointRegionDist(double[] point, double[] min, double[] max, double[] weights)
 	{
 		double d = 0;
 
@@ -56,7 +73,7 @@ public class Manhattan<T> extends KdTree<T>
 	}
 
 	@Override
-	protected double pointRegionMaxDist(double[] point, double[] min, double[] max)
+	protected double pointRegionMaxDist(double[] point, double[] min, double[] max, double[] weights)
 	{
 		throw new IllegalStateException();
 	}
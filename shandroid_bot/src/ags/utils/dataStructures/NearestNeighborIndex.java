@@ -0,0 +1,63 @@
+package ags.utils.dataStructures;
+
+import java.util.Iterator;
+
+/**
+ * A k-nearest neighbor index over points with a fixed number of dimensions.
+ * Each implementation has its own distance measure:
+ * <ul>
+ * <li>WeightedSqrEuclid and the third generation KdTree: weighted squared
+ * Euclidean distance</li>
+ * <li>WeightedManhattan: weighted Manhattan distance</li>
+ * <li>SqrEuclid and Manhattan: unweighted squared Euclidean and Manhattan
+ * distance, ignoring any weights passed to a search</li>
+ * </ul>
+ */
+public interface NearestNeighborIndex<T>
+{
+	/**
+	 * Add a point and its value. Implementations may keep 'location' rather
+	 * than copy it, so callers shouldn't change it afterwards.
+	 */
+	void addPoint(double[] location, T value);
+
+	int size();
+
+	/**
+	 * Calculates the nearest 'count' points to 'location', measuring distance
+	 * with the given per-axis weights and writing them into 'resultHeap'. The
+	 * heap is reset first.
+	 */
+	void nearestNeighbor(double[] location, int count, double[] weights, ResultHeap resultHeap);
+
+	/**
+	 * Iterates over the points in order of distance from 'location', nearest
+	 * first, searching only as far as the caller consumes. The index must not
+	 * change while iterating.
+	 */
+	Iterator<Entry<T>> nearestNeighborIterator(double[] location, double[] weights);
+
+	/**
+	 * Approximate nearest neighbor search, trading accuracy for a bounded
+	 * amount of work. 'epsilon' relaxes the bound used to skip parts of the
+	 * index and 'maxLeaves' caps how many buckets are scanned. Indexes without
+	 * an approximate mode search exactly.
+	 */
+	default void nearestNeighborApprox(double[] location, int count, double[] weights, ResultHeap resultHeap,
+			double epsilon, int maxLeaves)
+	{
+		this.nearestNeighbor(location, count, weights, resultHeap);
+	}
+
+	/**
+	 * Calculates the nearest 'counts[q]' points to each 'locations[q]',
+	 * writing them into 'results[q]'
+	 */
+	default void nearestNeighborBatch(double[][] locations, int[] counts, ResultHeap[] results, double[] weights)
+	{
+		for (int q = 0; q < locations.length; q++)
+		{
+			this.nearestNeighbor(locations[q], counts[q], weights, results[q]);
+		}
+	}
+}
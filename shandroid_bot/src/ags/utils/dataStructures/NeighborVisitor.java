@@ -0,0 +1,10 @@
+package ags.utils.dataStructures;
+
+/**
+ * Receives the points found by a range search, in no particular order
+ */
+@FunctionalInterface
+public interface NeighborVisitor<T>
+{
+	void visit(double distance, T value);
+}
@@ -1,26 +1,57 @@
 package ags.utils.dataStructures;
 
+import java.util.Arrays;
+
 /**
- * Class for tracking up to 'size' closest values
+ * Class for tracking up to 'size' closest values, along with the insertion
+ * sequence number each value had in the tree it came from
  */
 public class ResultHeap
 {
 	private Object[] data;
 	private double[] distance;
+	private long[] sequence;
 	private int size;
 	private int values;
 	private Object removedData;
 	private double removedDist;
+	private long removedSequence;
 
 	public ResultHeap(int size)
 	{
 		this.data = new Object[size];
 		this.distance = new double[size];
+		this.sequence = new long[size];
+		this.size = size;
+		this.values = 0;
+	}
+
+	/**
+	 * Empties the heap so it can be reused to track up to 'size' values,
+	 * growing the backing arrays only if they are too small
+	 */
+	public void reset(int size)
+	{
+		if (this.data.length < size)
+		{
+			this.data = new Object[size];
+			this.distance = new double[size];
+			this.sequence = new long[size];
+		}
+		else
+		{
+			Arrays.fill(this.data, 0, this.values, null);
+		}
 		this.size = size;
 		this.values = 0;
 	}
 
 	public void addValue(double dist, Object value)
+	{
+		this.addValue(dist, value, 0);
+	}
+
+	public void addValue(double dist, Object value, long seq)
 	{
 		// If there is still room in the heap
 		if (this.values < this.size)
@@ -28,6 +59,7 @@ public class ResultHeap
 			// Insert new value at the end
 			this.data[this.values] = value;
 			this.distance[this.values] = dist;
+			this.sequence[this.values] = seq;
 			this.upHeapify(this.values);
 			this.values++;
 		}
@@ -38,6 +70,7 @@ public class ResultHeap
 			// Replace the max entry with the new entry
 			this.data[0] = value;
 			this.distance[0] = dist;
+			this.sequence[0] = seq;
 			this.downHeapify(0);
 		}
 	}
@@ -51,22 +84,35 @@ public class ResultHeap
 
 		this.removedData = this.data[0];
 		this.removedDist = this.distance[0];
+		this.removedSequence = this.sequence[0];
 		this.values--;
 		this.data[0] = this.data[this.values];
 		this.distance[0] = this.distance[this.values];
+		this.sequence[0] = this.sequence[this.values];
 		this.downHeapify(0);
 	}
 
+	/**
+	 * Swaps the entries at two positions of the heap
+	 */
+	protected void swap(int a, int b)
+	{
+		Object aData = this.data[a];
+		double aDist = this.distance[a];
+		long aSeq = this.sequence[a];
+		this.data[a] = this.data[b];
+		this.distance[a] = this.distance[b];
+		this.sequence[a] = this.sequence[b];
+		this.data[b] = aData;
+		this.distance[b] = aDist;
+		this.sequence[b] = aSeq;
+	}
+
 	protected void upHeapify(int c)
 	{
 		for (int p = (c - 1) / 2; c != 0 && this.distance[c] > this.distance[p]; c = p, p = (c - 1) / 2)
 		{
-			Object pData = this.data[p];
-			double pDist = this.distance[p];
-			this.data[p] = this.data[c];
-			this.distance[p] = this.distance[c];
-			this.data[c] = pData;
-			this.distance[c] = pDist;
+			this.swap(p, c);
 		}
 	}
 
@@ -81,12 +127,7 @@ public class ResultHeap
 			if (this.distance[p] < this.distance[c])
 			{
 				// Swap the points
-				Object pData = this.data[p];
-				double pDist = this.distance[p];
-				this.data[p] = this.data[c];
-				this.distance[p] = this.distance[c];
-				this.data[c] = pData;
-				this.distance[c] = pDist;
+				this.swap(p, c);
 			}
 			else
 			{
@@ -155,6 +196,14 @@ public class ResultHeap
 		this.removedDist = removedDist;
 	}
 
+	/**
+	 * @return the removedSequence
+	 */
+	public long getRemovedSequence()
+	{
+		return this.removedSequence;
+	}
+
 	/**
 	 * @return the data
 	 */
@@ -171,6 +220,14 @@ public class ResultHeap
 		return this.distance;
 	}
 
+	/**
+	 * @return the sequence
+	 */
+	public long[] getSequence()
+	{
+		return this.sequence;
+	}
+
 	/**
 	 * @return the size
 	 */
@@ -8,7 +8,7 @@ public class ReverseResultHeap extends ResultHeap
 	}
 
 	@Override
-	public void addValue(double dist, Object value)
+	public void addValue(double dist, Object value, long seq)
 	{
 		int values = this.getValues();
 
@@ -18,6 +18,7 @@ public class ReverseResultHeap extends ResultHeap
 			// Insert new value at the end
 			this.getData()[values] = value;
 			this.getDistance()[values] = dist;
+			this.getSequence()[values] = seq;
 			this.upHeapify(values);
 			values++;
 			this.setValues(values);
@@ -29,6 +30,7 @@ public class ReverseResultHeap extends ResultHeap
 			// Replace the min entry with the new entry
 			this.getData()[0] = value;
 			this.getDistance()[0] = dist;
+			this.getSequence()[0] = seq;
 			this.downHeapify(0);
 		}
 	}
@@ -38,12 +40,7 @@ public class ReverseResultHeap extends ResultHeap
 	{
 		for (int p = (c - 1) / 2; c != 0 && this.getDistance()[c] < this.getDistance()[p]; c = p, p = (c - 1) / 2)
 		{
-			Object pData = this.getData()[p];
-			double pDist = this.getDistance()[p];
-			this.getData()[p] = this.getData()[c];
-			this.getDistance()[p] = this.getDistance()[c];
-			this.getData()[c] = pData;
-			this.getDistance()[c] = pDist;
+			this.swap(p, c);
 		}
 	}
 
@@ -59,12 +56,7 @@ public class ReverseResultHeap extends ResultHeap
 			if (this.getDistance()[p] > this.getDistance()[c])
 			{
 				// Swap the points
-				Object pData = this.getData()[p];
-				double pDist = this.getDistance()[p];
-				this.getData()[p] = this.getData()[c];
-				this.getDistance()[p] = this.getDistance()[c];
-				this.getData()[c] = pData;
-				this.getDistance()[c] = pDist;
+				this.swap(p, c);
 			}
 			else
 			{
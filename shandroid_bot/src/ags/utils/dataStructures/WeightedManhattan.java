@@ -30,16 +30,39 @@ public class WeightedManhattan<T> extends KdTree<T>
 	}
 
 	@Override
-	protected double pointDist(double[] p1, double[] p2)
+	protected double[] getDefaultWeights()
+	{
+		return this.weights;
+	}
+
+	@Override
+	protected double pointDist(double[] points, int offset, double[] location, double[] weights)
+	{
+		double d = 0;
+
+		for (int i = 0; i < location.length; i++)
+		{
+			double diff = (points[offset + i] - location[i]);
+			if (!Double.isNaN(diff))
+			{
+				d += ((diff < 0) ? -diff : diff) * weights[i];
+			}
+		}
+
+		return d;
+	}
+
+	@Override
+	protected double pointDist(float[] points, int offset, double[] location, double[] weights)
 	{
 		double d = 0;
 
-		for (int i = 0; i < p1.length; i++)
+		for (int i = 0; i < location.length; i++)
 		{
-			double diff = (p1[i] - p2[i]);
+			double diff = (points[offset + i] - location[i]);
 			if (!Double.isNaN(diff))
 			{
-				d += ((diff < 0) ? -diff : diff) * this.weights[i];
+				d += ((diff < 0) ? -diff : diff) * weights[i];
 			}
 		}
 
@@ -47,7 +70,7 @@ public class WeightedManhattan<T> extends KdTree<T>
 	}
 
 	@Override
-	protected double pointRegionDist(double[] point, double[] min, double[] max)
+	protected double pointRegionDist(double[] point, double[] min, double[] max, double[] weights)
 	{
 		double d = 0;
 
@@ -65,7 +88,7 @@ public class WeightedManhattan<T> extends KdTree<T>
 
 			if (!Double.isNaN(diff))
 			{
-				d += diff * this.weights[i];
+				d += diff * weights[i];
 			}
 		}
 
@@ -73,7 +96,7 @@ public class WeightedManhattan<T> extends KdTree<T>
 	}
 
 	@Override
-	protected double pointRegionMaxDist(double[] point, double[] min, double[] max)
+	protected double pointRegionMaxDist(double[] point, double[] min, double[] max, double[] weights)
 	{
 		throw new IllegalStateException();
 	}
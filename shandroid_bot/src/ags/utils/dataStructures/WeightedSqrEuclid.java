@@ -1,42 +1,232 @@
 package ags.utils.dataStructures;
 
 import java.util.Arrays;
+import java.util.Iterator;
 
 import ags.utils.KdTree;
 
 /**
- * Class for tree with Weighted Squared Euclidean distancing
+ * Class for tree with Weighted Squared Euclidean distancing. Searches may pass
+ * their own weights; the splits keep the weights they were chosen under. Trees
+ * with weight drift rebuilds on are rebuilt when a search's weights drift too
+ * far from those.
  */
 public class WeightedSqrEuclid<T> extends KdTree<T>
 {
+	// Rebuild when any axis weight differs from its split weight by more than
+	// this factor, either way
+	private static final double WEIGHT_DRIFT_RATIO = 1.5;
+	// Score leaves four points at a time unless the scalar loop is requested
+	// with -Dshandroid.scalarDistances=true
+	private static final boolean BATCHED_DISTANCES = useBatchedDistances();
+
 	private double[] weights;
+	private boolean rebuildOnWeightDrift;
+	// Only steers where new splits go, so searches may swap it without the
+	// tree's lock; volatile so the swap is seen by the next insert or rebuild
+	private volatile double[] splitWeights;
 
 	public WeightedSqrEuclid(int dimensions, Integer sizeLimit)
 	{
-		super(dimensions, sizeLimit);
+		this(dimensions, sizeLimit, false);
+	}
+
+	public WeightedSqrEuclid(int dimensions, Integer sizeLimit, boolean floatStorage)
+	{
+		super(dimensions, sizeLimit, floatStorage);
 		this.weights = new double[dimensions];
 		Arrays.fill(this.weights, 1.0);
+		this.splitWeights = this.weights.clone();
 	}
 
+	/**
+	 * Set the weights used by searches that don't supply their own. Until the
+	 * tree has data, this also sets the weights splits are chosen under.
+	 */
 	public void setWeights(double[] weights)
 	{
 		this.weights = weights;
+		if (this.size() == 0)
+		{
+			this.splitWeights = weights.clone();
+		}
+	}
+
+	/**
+	 * Rebuild the tree under a search's weights when they drift too far from
+	 * the weights its splits were chosen under. Off by default, since each
+	 * rebuild reinserts every point, in the middle of that search.
+	 */
+	public void setRebuildOnWeightDrift(boolean rebuildOnWeightDrift)
+	{
+		this.rebuildOnWeightDrift = rebuildOnWeightDrift;
 	}
 
 	@Override
 	protected double getAxisWeightHint(int i)
 	{
-		return this.weights[i];
+		return this.splitWeights[i];
+	}
+
+	@Override
+	protected double[] getDefaultWeights()
+	{
+		return this.weights;
+	}
+
+	@Override
+	public void nearestNeighbor(double[] location, int count, double[] weights, ResultHeap resultHeap)
+	{
+		this.checkWeightDrift(weights);
+		super.nearestNeighbor(location, count, weights, resultHeap);
+	}
+
+	@Override
+	public void nearestNeighborApprox(double[] location, int count, double[] weights, ResultHeap resultHeap,
+			double epsilon, int maxLeaves)
+	{
+		this.checkWeightDrift(weights);
+		super.nearestNeighborApprox(location, count, weights, resultHeap, epsilon, maxLeaves);
+	}
+
+	@Override
+	public int rangeSearch(double[] location, double radius, double[] weights, int maxCount,
+			NeighborVisitor<? super T> visitor)
+	{
+		this.checkWeightDrift(weights);
+		return super.rangeSearch(location, radius, weights, maxCount, visitor);
+	}
+
+	@Override
+	public Iterator<Entry<T>> nearestNeighborIterator(double[] location, double[] weights)
+	{
+		this.checkWeightDrift(weights);
+		return super.nearestNeighborIterator(location, weights);
+	}
+
+	@Override
+	public void nearestNeighborBatch(double[][] locations, int[] counts, ResultHeap[] results, double[] weights)
+	{
+		this.checkWeightDrift(weights);
+		super.nearestNeighborBatch(locations, counts, results, weights);
+	}
+
+	/**
+	 * Rebuild the tree under 'weights' if drift rebuilds are on and they've
+	 * drifted too far from the weights its splits were chosen under. Axes
+	 * weighted zero either way are skipped, since no rebuild could fit both.
+	 * Searches nested inside another search of this tree never rebuild it.
+	 */
+	private void checkWeightDrift(double[] weights)
+	{
+		double[] current = this.splitWeights;
+		if (!this.rebuildOnWeightDrift || weights == current || this.isSearching())
+		{
+			return;
+		}
+		for (int i = 0; i < weights.length; i++)
+		{
+			double ratio = weights[i] / current[i];
+			if (ratio == 0 || Double.isInfinite(ratio) || Double.isNaN(ratio))
+			{
+				continue;
+			}
+			if (ratio > WEIGHT_DRIFT_RATIO || ratio < 1 / WEIGHT_DRIFT_RATIO)
+			{
+				this.splitWeights = weights.clone();
+				this.rebuild();
+				return;
+			}
+		}
+	}
+
+	@Override
+	protected double pointDist(double[] points, int offset, double[] location, double[] weights)
+	{
+		double d = 0;
+
+		for (int i = 0; i < location.length; i++)
+		{
+			double diff = (points[offset + i] - location[i]) * weights[i];
+			if (!Double.isNaN(diff))
+			{
+				d += diff * diff;
+			}
+		}
+
+		return d;
+	}
+
+	/**
+	 * Scores four points per pass over the dimensions, each point summing its
+	 * terms in the same order as pointDist so the results are identical
+	 */
+	@Override
+	protected void pointDists(double[] points, int count, double[] location, double[] weights, double[] distances)
+	{
+		if (!BATCHED_DISTANCES)
+		{
+			super.pointDists(points, count, location, weights, distances);
+			return;
+		}
+
+		int dimensions = location.length;
+		int p = 0;
+		for (; p + 4 <= count; p += 4)
+		{
+			int offset0 = p * dimensions;
+			int offset1 = offset0 + dimensions;
+			int offset2 = offset1 + dimensions;
+			int offset3 = offset2 + dimensions;
+			double d0 = 0, d1 = 0, d2 = 0, d3 = 0;
+
+			for (int i = 0; i < dimensions; i++)
+			{
+				double q = location[i];
+				double w = weights[i];
+				double diff0 = (points[offset0 + i] - q) * w;
+				double diff1 = (points[offset1 + i] - q) * w;
+				double diff2 = (points[offset2 + i] - q) * w;
+				double diff3 = (points[offset3 + i] - q) * w;
+
+				// diff == diff is false only for NaN, which pointDist skips
+				d0 += (diff0 == diff0) ? diff0 * diff0 : 0;
+				d1 += (diff1 == diff1) ? diff1 * diff1 : 0;
+				d2 += (diff2 == diff2) ? diff2 * diff2 : 0;
+				d3 += (diff3 == diff3) ? diff3 * diff3 : 0;
+			}
+
+			distances[p] = d0;
+			distances[p + 1] = d1;
+			distances[p + 2] = d2;
+			distances[p + 3] = d3;
+		}
+		for (; p < count; p++)
+		{
+			distances[p] = this.pointDist(points, p * dimensions, location, weights);
+		}
+	}
+
+	private static boolean useBatchedDistances()
+	{
+		try
+		{
+			return !Boolean.getBoolean("shandroid.scalarDistances");
+		}
+		catch (SecurityException e)
+		{
+			return true;
+		}
 	}
 
 	@Override
-	protected double pointDist(double[] p1, double[] p2)
+	protected double pointDist(float[] points, int offset, double[] location, double[] weights)
 	{
 		double d = 0;
 
-		for (int i = 0; i < p1.length; i++)
+		for (int i = 0; i < location.length; i++)
 		{
-			double diff = (p1[i] - p2[i]) * this.weights[i];
+			double diff = (points[offset + i] - location[i]) * weights[i];
 			if (!Double.isNaN(diff))
 			{
 				d += diff * diff;
@@ -47,7 +237,7 @@ public class WeightedSqrEuclid<T> extends KdTree<T>
 	}
 
 	@Override
-	protected double pointRegionDist(double[] point, double[] min, double[] max)
+	protected double pointRegionDist(double[] point, double[] min, double[] max, double[] weights)
 	{
 		double d = 0;
 
@@ -56,11 +246,11 @@ public class WeightedSqrEuclid<T> extends KdTree<T>
 			double diff = 0;
 			if (point[i] > max[i])
 			{
-				diff = (point[i] - max[i]) * this.weights[i];
+				diff = (point[i] - max[i]) * weights[i];
 			}
 			else if (point[i] < min[i])
 			{
-				diff = (point[i] - min[i]) * this.weights[i];
+				diff = (point[i] - min[i]) * weights[i];
 			}
 
 			if (!Double.isNaN(diff))
@@ -73,13 +263,13 @@ public class WeightedSqrEuclid<T> extends KdTree<T>
 	}
 
 	@Override
-	protected double pointRegionMaxDist(double[] point, double[] min, double[] max)
+	protected double pointRegionMaxDist(double[] point, double[] min, double[] max, double[] weights)
 	{
 		double d = 0;
 
 		for (int i = 0; i < point.length; i++)
 		{
-			double diff = Math.max(Math.abs(point[i] - min[i]), Math.abs(max[i] - point[i])) * this.weights[i];
+			double diff = Math.max(Math.abs(point[i] - min[i]), Math.abs(max[i] - point[i])) * weights[i];
 
 			if (!Double.isNaN(diff))
 			{
@@ -1,12 +1,19 @@
 package ags.utils.dataStructures.trees.thirdGenTrees;
 
+import java.util.Iterator;
+
+import ags.utils.dataStructures.Entry;
 import ags.utils.dataStructures.MaxBinaryHeap;
 import ags.utils.dataStructures.MaxHeap;
 import ags.utils.dataStructures.MinBinaryHeap;
 import ags.utils.dataStructures.MinHeap;
+import ags.utils.dataStructures.NearestNeighborIndex;
+import ags.utils.dataStructures.ResultHeap;
 
-public class KdTree<T> extends KdNode<T>
+public class KdTree<T> extends KdNode<T> implements NearestNeighborIndex<T>
 {
+	private WeightedSquareEuclideanDistanceFunction weightedDistance;
+
 	public KdTree(int dimensions)
 	{
 		this(dimensions, 24);
@@ -17,7 +24,7 @@ public class KdTree<T> extends KdNode<T>
 		super(dimensions, bucketCapacity);
 	}
 
-	public MaxHeap<T> findNearestNeighbors(double[] searchPoint, int maxPointsReturned, DistanceFunction distanceFunction)
+	public MaxBinaryHeap<T> findNearestNeighbors(double[] searchPoint, int maxPointsReturned, DistanceFunction distanceFunction)
 	{
 		MinBinaryHeap<KdNode<T>> pendingPaths = new MinBinaryHeap<>();
 		MaxBinaryHeap<T> evaluatedPoints = new MaxBinaryHeap<>();
@@ -33,6 +40,48 @@ public class KdTree<T> extends KdNode<T>
 		return evaluatedPoints;
 	}
 
+	@Override
+	public void nearestNeighbor(double[] location, int count, double[] weights, ResultHeap resultHeap)
+	{
+		// Read and write the cached function once each, so a concurrent search
+		// with other weights can't swap it out from under this one
+		WeightedSquareEuclideanDistanceFunction distance = this.weightedDistance;
+		if (distance == null || distance.getWeights() != weights)
+		{
+			distance = new WeightedSquareEuclideanDistanceFunction(weights);
+		}
+		MaxBinaryHeap<T> neighbors = this.findNearestNeighbors(location, count, distance);
+		this.weightedDistance = distance;
+
+		resultHeap.reset(count);
+		for (int i = 0; i < neighbors.size(); i++)
+		{
+			resultHeap.addValue(neighbors.getKeys()[i], neighbors.getData()[i]);
+		}
+	}
+
+	@Override
+	public Iterator<Entry<T>> nearestNeighborIterator(double[] location, double[] weights)
+	{
+		NearestNeighborIterator<T> neighbors = new NearestNeighborIterator<>(this, location, this.size(),
+				new WeightedSquareEuclideanDistanceFunction(weights));
+		return new Iterator<Entry<T>>()
+		{
+			@Override
+			public boolean hasNext()
+			{
+				return neighbors.hasNext();
+			}
+
+			@Override
+			public Entry<T> next()
+			{
+				T value = neighbors.next();
+				return new Entry<>(neighbors.distance(), value);
+			}
+		};
+	}
+
 	static <T> void nearestNeighborSearchStep(MinHeap<KdNode<T>> pendingPaths, MaxHeap<T> evaluatedPoints,
 			int desiredPoints, DistanceFunction distanceFunction, double[] searchPoint)
 	{
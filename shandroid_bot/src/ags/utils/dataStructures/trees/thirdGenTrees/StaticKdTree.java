@@ -0,0 +1,289 @@
+package ags.utils.dataStructures.trees.thirdGenTrees;
+
+import java.util.List;
+
+import ags.utils.dataStructures.ResultHeap;
+
+/**
+ * A k-d tree bulk loaded from data known up front, whose points never change
+ * once it's built. Every stem splits its points at the median of their widest
+ * axis, so the tree is balanced whatever order the points come in. Nodes live
+ * in arrays indexed like a binary heap (the children of node i are 2i + 1 and
+ * 2i + 2), and each leaf's points sit together, in leaf order. Searches keep
+ * their scratch space per thread, so any number can run at once.
+ */
+public class StaticKdTree<T>
+{
+	/**
+	 * Per-thread scratch space for searches
+	 */
+	private static final class SearchContext
+	{
+		private int[] stack = new int[0];
+		private ResultHeap nearest = new ResultHeap(1);
+	}
+
+	private static final ThreadLocal<SearchContext> SEARCH_CONTEXT = ThreadLocal.withInitial(SearchContext::new);
+
+	private int dimensions;
+	private int size;
+	private int leafCount;
+
+	// Points in leaf order. Leaf j holds points leafStart[j] .. leafStart[j + 1] - 1.
+	private double[][] points;
+	private Object[] data;
+	private int[] leafStart;
+
+	// Stems are nodes 0 .. leafCount - 2, leaves leafCount - 1 .. 2 * leafCount - 2
+	private int[] splitDimension;
+	private double[] splitValue;
+	private double[][] minBound, maxBound;
+
+	// The most nodes a search can have on its stack at once
+	private int maxStackDepth;
+
+	/**
+	 * Builds a tree over the given points and values, with at most
+	 * 'bucketSize' points in each leaf. The points are copied.
+	 */
+	public StaticKdTree(List<double[]> points, List<T> values, int bucketSize)
+	{
+		this.size = points.size();
+		this.dimensions = (this.size == 0) ? 0 : points.get(0).length;
+		this.leafCount = 1;
+		int depth = 0;
+		while (this.leafCount * bucketSize < this.size)
+		{
+			this.leafCount *= 2;
+			depth++;
+		}
+
+		this.points = new double[this.size][];
+		this.data = new Object[this.size];
+		double[][] order = points.toArray(new double[this.size][]);
+		Object[] orderData = values.toArray();
+		int nodes = 2 * this.leafCount - 1;
+		this.splitDimension = new int[this.leafCount - 1];
+		this.splitValue = new double[this.leafCount - 1];
+		this.minBound = new double[nodes][];
+		this.maxBound = new double[nodes][];
+		this.leafStart = new int[this.leafCount + 1];
+		this.build(0, 0, this.size, order, orderData);
+		this.leafStart[this.leafCount] = this.size;
+
+		this.maxStackDepth = depth + 2;
+	}
+
+	public int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * Splits order[from .. to) for the given node, then copies leaf points
+	 * into place and fills in bounds on the way back up
+	 */
+	private void build(int node, int from, int to, double[][] order, Object[] orderData)
+	{
+		if (node >= this.leafCount - 1)
+		{
+			int leaf = node - (this.leafCount - 1);
+			this.leafStart[leaf] = from;
+			for (int i = from; i < to; i++)
+			{
+				this.points[i] = order[i].clone();
+				this.data[i] = orderData[i];
+			}
+			this.setBounds(node, from, to);
+			return;
+		}
+
+		int mid = (from + to) >>> 1;
+		int dimension = this.widestAxis(order, from, to);
+		if (to > from)
+		{
+			select(order, orderData, from, to - 1, mid < to ? mid : to - 1, dimension);
+		}
+		this.splitDimension[node] = dimension;
+		this.splitValue[node] = (mid < to) ? order[mid][dimension] : 0;
+		this.build(2 * node + 1, from, mid, order, orderData);
+		this.build(2 * node + 2, mid, to, order, orderData);
+
+		int left = 2 * node + 1;
+		int right = 2 * node + 2;
+		if (this.minBound[left] == null)
+		{
+			this.minBound[node] = this.minBound[right];
+			this.maxBound[node] = this.maxBound[right];
+		}
+		else if (this.minBound[right] == null)
+		{
+			this.minBound[node] = this.minBound[left];
+			this.maxBound[node] = this.maxBound[left];
+		}
+		else
+		{
+			this.minBound[node] = new double[this.dimensions];
+			this.maxBound[node] = new double[this.dimensions];
+			for (int i = 0; i < this.dimensions; i++)
+			{
+				this.minBound[node][i] = Math.min(this.minBound[left][i], this.minBound[right][i]);
+				this.maxBound[node][i] = Math.max(this.maxBound[left][i], this.maxBound[right][i]);
+			}
+		}
+	}
+
+	private void setBounds(int node, int from, int to)
+	{
+		if (from == to)
+		{
+			return;
+		}
+		this.minBound[node] = this.points[from].clone();
+		this.maxBound[node] = this.points[from].clone();
+		for (int p = from + 1; p < to; p++)
+		{
+			for (int i = 0; i < this.dimensions; i++)
+			{
+				this.minBound[node][i] = Math.min(this.minBound[node][i], this.points[p][i]);
+				this.maxBound[node][i] = Math.max(this.maxBound[node][i], this.points[p][i]);
+			}
+		}
+	}
+
+	private int widestAxis(double[][] order, int from, int to)
+	{
+		int widest = 0;
+		double width = -1;
+		for (int i = 0; i < this.dimensions; i++)
+		{
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (int p = from; p < to; p++)
+			{
+				min = Math.min(min, order[p][i]);
+				max = Math.max(max, order[p][i]);
+			}
+			if (max - min > width)
+			{
+				widest = i;
+				width = max - min;
+			}
+		}
+		return widest;
+	}
+
+	/**
+	 * Partially sorts order[left .. right] on 'dimension' so that position 'k'
+	 * holds the value it would in a full sort, smaller or equal values before
+	 * it and larger or equal values after it
+	 */
+	private static void select(double[][] order, Object[] orderData, int left, int right, int k, int dimension)
+	{
+		while (left < right)
+		{
+			double pivot = order[(left + right) >>> 1][dimension];
+			int i = left;
+			int j = right;
+			while (i <= j)
+			{
+				while (order[i][dimension] < pivot)
+				{
+					i++;
+				}
+				while (order[j][dimension] > pivot)
+				{
+					j--;
+				}
+				if (i <= j)
+				{
+					double[] point = order[i];
+					order[i] = order[j];
+					order[j] = point;
+					Object value = orderData[i];
+					orderData[i] = orderData[j];
+					orderData[j] = value;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j)
+			{
+				right = j;
+			}
+			else if (k >= i)
+			{
+				left = i;
+			}
+			else
+			{
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Writes the nearest 'count' points to 'searchPoint' into 'results',
+	 * resetting it first
+	 */
+	public void findNearestNeighbors(double[] searchPoint, int count, DistanceFunction distanceFunction,
+			ResultHeap results)
+	{
+		results.reset(count);
+		if (this.size == 0)
+		{
+			return;
+		}
+
+		SearchContext context = SEARCH_CONTEXT.get();
+		if (context.stack.length < this.maxStackDepth)
+		{
+			context.stack = new int[this.maxStackDepth];
+		}
+		int[] stack = context.stack;
+		int depth = 0;
+		stack[depth++] = 0;
+		while (depth > 0)
+		{
+			int node = stack[--depth];
+			if (this.minBound[node] == null
+					|| distanceFunction.distanceToRect(searchPoint, this.minBound[node], this.maxBound[node]) > results.getMaxDist())
+			{
+				continue;
+			}
+
+			if (node >= this.leafCount - 1)
+			{
+				int leaf = node - (this.leafCount - 1);
+				for (int p = this.leafStart[leaf]; p < this.leafStart[leaf + 1]; p++)
+				{
+					results.addValue(distanceFunction.distance(this.points[p], searchPoint), this.data[p]);
+				}
+				continue;
+			}
+
+			if (searchPoint[this.splitDimension[node]] > this.splitValue[node])
+			{
+				stack[depth++] = 2 * node + 1;
+				stack[depth++] = 2 * node + 2;
+			}
+			else
+			{
+				stack[depth++] = 2 * node + 2;
+				stack[depth++] = 2 * node + 1;
+			}
+		}
+	}
+
+	/**
+	 * The value of the point nearest to 'searchPoint', or null if the tree is
+	 * empty
+	 */
+	@SuppressWarnings("unchecked")
+	public T findNearestNeighbor(double[] searchPoint, DistanceFunction distanceFunction)
+	{
+		ResultHeap nearest = SEARCH_CONTEXT.get().nearest;
+		this.findNearestNeighbors(searchPoint, 1, distanceFunction, nearest);
+		return (nearest.getValues() == 0) ? null : (T) nearest.getData()[0];
+	}
+}
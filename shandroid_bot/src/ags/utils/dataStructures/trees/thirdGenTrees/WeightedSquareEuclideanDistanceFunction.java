@@ -0,0 +1,61 @@
+package ags.utils.dataStructures.trees.thirdGenTrees;
+
+public class WeightedSquareEuclideanDistanceFunction implements DistanceFunction
+{
+	private final double[] weights;
+
+	public WeightedSquareEuclideanDistanceFunction(double[] weights)
+	{
+		this.weights = weights;
+	}
+
+	@Override
+	public double distance(double[] p1, double[] p2)
+	{
+		double d = 0;
+
+		for (int i = 0; i < p1.length; i++)
+		{
+			double diff = (p1[i] - p2[i]) * this.weights[i];
+			if (!Double.isNaN(diff))
+			{
+				d += diff * diff;
+			}
+		}
+
+		return d;
+	}
+
+	@Override
+	public double distanceToRect(double[] point, double[] min, double[] max)
+	{
+		double d = 0;
+
+		for (int i = 0; i < point.length; i++)
+		{
+			double diff = 0;
+			if (point[i] > max[i])
+			{
+				diff = (point[i] - max[i]) * this.weights[i];
+			}
+			else if (point[i] < min[i])
+			{
+				diff = (point[i] - min[i]) * this.weights[i];
+			}
+			if (!Double.isNaN(diff))
+			{
+				d += diff * diff;
+			}
+		}
+
+		return d;
+	}
+
+	/**
+	 * @return the weights
+	 */
+	public double[] getWeights()
+	{
+		return this.weights;
+	}
+}
@@ -5,6 +5,7 @@ import voidious.gun.Gun;
 import voidious.move.Move;
 import voidious.radar.Radar;
 import voidious.utils.ErrorLogger;
+import voidious.utils.KnnMetrics;
 
 import java.awt.*;
 
@@ -55,11 +56,13 @@ import java.awt.*;
 public class Shandroid extends AdvancedRobot
 {
 	private static final boolean LOG_ERRORS = true;
+	private static final boolean KNN_METRICS = false;
 	private static double RANDOM_COLORS = Math.random();
 
 	static
 	{
 		ErrorLogger.enabled = LOG_ERRORS;
+		KnnMetrics.enabled = KNN_METRICS;
 	}
 
 	private Radar radar;
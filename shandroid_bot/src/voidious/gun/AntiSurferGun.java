@@ -1,6 +1,6 @@
 package voidious.gun;
 
-import ags.utils.dataStructures.Entry;
+import ags.utils.dataStructures.ResultHeap;
 import robocode.util.Utils;
 import voidious.gun.formulas.AntiSurferFormula;
 import voidious.utils.*;
@@ -36,12 +36,20 @@ class AntiSurferGun extends DuelGun<TimestampedFiringAngle>
 
 	private List<String> viewNames;
 	private boolean is1v1Battle;
+	private ResultHeap neighbors;
+	private double[] firingAngles;
+	private double[] neighborWeights;
+	private double[] realAngles;
 
 	AntiSurferGun(GunDataManager gunDataManager, BattleField battleField)
 	{
 		super(gunDataManager, battleField, new AntiSurferFormula());
 		this.viewNames = new ArrayList<>();
 		this.is1v1Battle = (gunDataManager.getEnemiesTotal() == 1);
+		this.neighbors = new ResultHeap(1);
+		this.firingAngles = new double[0];
+		this.neighborWeights = new double[0];
+		this.realAngles = new double[FIRING_ANGLES];
 	}
 
 	@Override
@@ -54,8 +62,7 @@ class AntiSurferGun extends DuelGun<TimestampedFiringAngle>
 	protected double aimInternal(Wave w)
 	{
 		GunEnemy gunData = this.getGdManager().getEnemyData(w.getBotName());
-		List<Entry<TimestampedFiringAngle>> nearestNeighbors = null;
-		double[] neighborWeights = null;
+		int numScans = 0;
 		for (String viewName : this.viewNames)
 		{
 			KnnView<TimestampedFiringAngle> view = gunData.getViews().get(viewName);
@@ -64,84 +71,58 @@ class AntiSurferGun extends DuelGun<TimestampedFiringAngle>
 				continue;
 			}
 
-			List<Entry<TimestampedFiringAngle>> thisNeighbors = view.nearestNeighbors(w, true);
-			double[] thisWeights = new double[thisNeighbors.size()];
-			Arrays.fill(thisWeights, view.weight);
-
-			if (nearestNeighbors == null)
+			view.nearestNeighbors(w, true, this.neighbors);
+			int viewScans = this.neighbors.getValues();
+			if (this.firingAngles.length < numScans + viewScans)
 			{
-				nearestNeighbors = thisNeighbors;
-				neighborWeights = thisWeights;
+				this.firingAngles = Arrays.copyOf(this.firingAngles, numScans + viewScans);
+				this.neighborWeights = Arrays.copyOf(this.neighborWeights, numScans + viewScans);
 			}
-			else
+			Object[] neighborValues = this.neighbors.getData();
+			for (int x = 0; x < viewScans; x++)
 			{
-				nearestNeighbors.addAll(thisNeighbors);
-				int newIndex = neighborWeights.length;
-				neighborWeights = Arrays.copyOf(neighborWeights, nearestNeighbors.size());
-				System.arraycopy(thisWeights, 0, neighborWeights, newIndex, neighborWeights.length - newIndex);
+				this.firingAngles[numScans] = this.firingAngle(w, (TimestampedFiringAngle) neighborValues[x]);
+				this.neighborWeights[numScans] = view.weight;
+				numScans++;
 			}
 		}
 
-		if (nearestNeighbors == null || nearestNeighbors.size() == 0)
+		if (numScans == 0)
 		{
 			return w.getAbsBearing();
 		}
 
-		int numScans = nearestNeighbors.size();
-		Double[] firingAngles = new Double[numScans];
-		for (int x = 0; x < numScans; x++)
-		{
-			if (this.is1v1Battle)
-			{
-				double guessFactor = nearestNeighbors.get(x).getValue().getGuessFactor();
-				firingAngles[x] = Utils.normalRelativeAngle((guessFactor * w.getOrbitDirection() * w
-						.preciseEscapeAngle(guessFactor >= 0)));
-			}
-			else
-			{
-				Point2D.Double dispVector = nearestNeighbors.get(x).getValue().getDisplacementVector();
-				Point2D.Double projectedLocation = w.projectLocationFromDisplacementVector(dispVector);
-				if (!this.getBattleField().getRectangle().contains(projectedLocation))
-				{
-					firingAngles[x] = null;
-				}
-				else
-				{
-					firingAngles[x] = Utils.normalRelativeAngle(w.firingAngleFromTargetLocation(projectedLocation)
-							- w.getAbsBearing());
-				}
-			}
-		}
-
-		Double bestAngle = null;
+		boolean foundAngle = false;
+		double bestAngle = 0;
 		double bestDensity = Double.NEGATIVE_INFINITY;
 		double bandwidth = DiaUtils.botWidthAimAngle(w.getSourceLocation().distance(w.getTargetLocation())) * 2;
-		double[] realAngles = DiaUtils.generateFiringAngles(FIRING_ANGLES, w.getMaxEscapeAngle());
+		DiaUtils.generateFiringAngles(this.realAngles, w.getMaxEscapeAngle());
 		for (int x = 0; x < FIRING_ANGLES; x++)
 		{
-			double xFiringAngle = realAngles[x];
+			double xFiringAngle = this.realAngles[x];
 
 			double xDensity = 0;
 			for (int y = 0; y < numScans; y++)
 			{
-				if (firingAngles[y] == null)
+				if (Double.isNaN(this.firingAngles[y]))
 				{
 					continue;
 				}
 
-				double yFiringAngle = firingAngles[y];
+				double yFiringAngle = this.firingAngles[y];
 				double ux = (xFiringAngle - yFiringAngle) / bandwidth;
-				xDensity += Math.exp(-0.5 * ux * ux) * neighborWeights[y];
+				xDensity += Math.exp(-0.5 * ux * ux) * this.neighborWeights[y];
 			}
 
 			if (xDensity > bestDensity)
 			{
+				foundAngle = true;
 				bestAngle = xFiringAngle;
 				bestDensity = xDensity;
 			}
 		}
 
-		if (bestAngle == null)
+		if (!foundAngle)
 		{
 			return w.getAbsBearing();
 		}
@@ -149,6 +130,27 @@ class AntiSurferGun extends DuelGun<TimestampedFiringAngle>
 		return Utils.normalAbsoluteAngle(w.getAbsBearing() + bestAngle);
 	}
 
+	/**
+	 * The firing angle a neighbor suggests, relative to the wave's absolute
+	 * bearing, or NaN if it would project outside the battle field
+	 */
+	private double firingAngle(Wave w, TimestampedFiringAngle neighbor)
+	{
+		if (this.is1v1Battle)
+		{
+			double guessFactor = neighbor.getGuessFactor();
+			return Utils.normalRelativeAngle((guessFactor * w.getOrbitDirection() * w.preciseEscapeAngle(guessFactor >= 0)));
+		}
+
+		Point2D.Double dispVector = neighbor.getDisplacementVector();
+		Point2D.Double projectedLocation = w.projectLocationFromDisplacementVector(dispVector);
+		if (!this.getBattleField().getRectangle().contains(projectedLocation))
+		{
+			return Double.NaN;
+		}
+		return Utils.normalRelativeAngle(w.firingAngleFromTargetLocation(projectedLocation) - w.getAbsBearing());
+	}
+
 	@Override
 	public List<KnnView<TimestampedFiringAngle>> newDataViews()
 	{
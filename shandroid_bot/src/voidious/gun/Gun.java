@@ -319,6 +319,8 @@ public class Gun
 		if (this.is1v1() && duelEnemy != null)
 		{
 			this.virtualGuns.printGunRatings(duelEnemy.getBotName());
+			duelEnemy.printViewRecall();
+			duelEnemy.printViewMetrics(this.robot, "gun");
 		}
 	}
 
@@ -81,7 +81,7 @@ class GunEnemy extends Enemy<TimestampedFiringAngle>
 						currentTime,
 						this.newUpdateWaveListener(myLocation, lastBulletFiredTime, currentGunHeat
 						));
-		this.getWaveManager().checkActiveWaves(currentTime, this.getLastScanState(),
+		this.getWaveManager().checkActiveWaves(currentTime, this.getLastScanState(), this.getStateLog(),
 				this.newWaveBreakListener(currentTime, enemiesTotal, is1v1, gunDataListeners));
 	}
 
@@ -115,6 +115,11 @@ class GunEnemy extends Enemy<TimestampedFiringAngle>
 		if (enemiesTotal == 1)
 		{
 			preciseIntersection = w.preciseIntersection(waveBreakStates);
+			if (preciseIntersection == null)
+			{
+				// The wave only grazed the bot, so there's no hit angle to log
+				return;
+			}
 			guessFactor = w.guessFactorPrecise(preciseIntersection.getAngle());
 		}
 
@@ -128,6 +133,10 @@ class GunEnemy extends Enemy<TimestampedFiringAngle>
 			if (preciseIntersection == null)
 			{
 				preciseIntersection = w.preciseIntersection(waveBreakStates);
+				if (preciseIntersection == null)
+				{
+					return;
+				}
 			}
 			double hitAngle = preciseIntersection.getAngle();
 			double tolerance = preciseIntersection.getBandwidth();
@@ -174,7 +183,8 @@ class GunEnemy extends Enemy<TimestampedFiringAngle>
 	private void logWave(Wave w, Point2D.Double dispVector, double guessFactor, long time, boolean isVisit)
 	{
 		this.getViews().values().stream().filter(view -> (isVisit && view.logVisits || !isVisit && view.logBulletHits) && (view.logVirtual || w.isFiringWave())
-				&& (view.logMelee || w.getEnemiesAlive() <= 1)).forEach(view -> view.logWave(w, new TimestampedFiringAngle(w.getFireRound(), time, guessFactor, dispVector)));
+				&& (view.logMelee || w.getEnemiesAlive() <= 1)).map(KnnView::getStore).distinct()
+				.forEach(store -> store.logWave(w, new TimestampedFiringAngle(w.getFireRound(), time, guessFactor, dispVector)));
 	}
 
 	Wave newGunWave(Point2D.Double sourceLocation, Point2D.Double targetLocation, int fireRound, long fireTime,
@@ -1,6 +1,6 @@
 package voidious.gun;
 
-import ags.utils.dataStructures.Entry;
+import ags.utils.dataStructures.ResultHeap;
 import robocode.util.Utils;
 import voidious.gun.formulas.MainGunFormula;
 import voidious.utils.*;
@@ -35,9 +35,14 @@ class MainGun extends DuelGun<TimestampedFiringAngle>
 	private static final int K_SIZE = 100;
 	private static final int K_DIVISOR = 10;
 
+	private ResultHeap neighbors;
+	private double[] firingAngles;
+
 	MainGun(GunDataManager gunDataManager, BattleField battleField)
 	{
 		super(gunDataManager, battleField, null);
+		this.neighbors = new ResultHeap(K_SIZE);
+		this.firingAngles = new double[K_SIZE];
 	}
 
 	@Override
@@ -57,60 +62,62 @@ class MainGun extends DuelGun<TimestampedFiringAngle>
 			return w.getAbsBearing();
 		}
 
-		List<Entry<TimestampedFiringAngle>> nearestNeighbors = view.nearestNeighbors(w, true);
-		int numScans = nearestNeighbors.size();
-		Double[] firingAngles = new Double[numScans];
+		view.nearestNeighbors(w, true, this.neighbors);
+		int numScans = this.neighbors.getValues();
+		Object[] neighborValues = this.neighbors.getData();
 
 		for (int x = 0; x < numScans; x++)
 		{
-			Point2D.Double dispVector = nearestNeighbors.get(x).getValue().getDisplacementVector();
+			Point2D.Double dispVector = ((TimestampedFiringAngle) neighborValues[x]).getDisplacementVector();
 			Point2D.Double projectedLocation = w.projectLocationFromDisplacementVector(dispVector);
 
 			if (!this.getBattleField().getRectangle().contains(projectedLocation))
 			{
-				firingAngles[x] = null;
+				this.firingAngles[x] = Double.NaN;
 			}
 			else
 			{
-				firingAngles[x] = Utils.normalRelativeAngle(w.firingAngleFromTargetLocation(projectedLocation)
+				this.firingAngles[x] = Utils.normalRelativeAngle(w.firingAngleFromTargetLocation(projectedLocation)
 						- w.getAbsBearing());
 			}
 		}
 
-		Double bestAngle = null;
+		boolean foundAngle = false;
+		double bestAngle = 0;
 		double bestDensity = Double.NEGATIVE_INFINITY;
 		double bandwidth = 2 * DiaUtils.botWidthAimAngle(w.getSourceLocation().distance(w.getTargetLocation()));
 
 		for (int x = 0; x < numScans; x++)
 		{
-			if (firingAngles[x] == null)
+			if (Double.isNaN(this.firingAngles[x]))
 			{
 				continue;
 			}
 
-			double xFiringAngle = firingAngles[x];
+			double xFiringAngle = this.firingAngles[x];
 			double xDensity = 0;
 
 			for (int y = 0; y < numScans; y++)
 			{
-				if (x == y || firingAngles[y] == null)
+				if (x == y || Double.isNaN(this.firingAngles[y]))
 				{
 					continue;
 				}
 
-				double yFiringAngle = firingAngles[y];
+				double yFiringAngle = this.firingAngles[y];
 				double ux = (xFiringAngle - yFiringAngle) / bandwidth;
 				xDensity += Math.exp(-0.5 * ux * ux);
 			}
 
 			if (xDensity > bestDensity)
 			{
+				foundAngle = true;
 				bestAngle = xFiringAngle;
 				bestDensity = xDensity;
 			}
 		}
 
-		if (bestAngle == null)
+		if (!foundAngle)
 		{
 			return w.getAbsBearing();
 		}
@@ -123,7 +130,7 @@ class MainGun extends DuelGun<TimestampedFiringAngle>
 	{
 		List<KnnView<TimestampedFiringAngle>> views = new ArrayList<>();
 		views.add(new KnnView<TimestampedFiringAngle>(new MainGunFormula(this.getGdManager().getEnemiesTotal())).setK(K_SIZE)
-				.setKDivisor(K_DIVISOR).visitsOn().virtualWavesOn().meleeOn().setName(VIEW_NAME));
+				.setKDivisor(K_DIVISOR).visitsOn().virtualWavesOn().meleeOn().floatStorageOn().setName(VIEW_NAME));
 		return views;
 	}
 }
\ No newline at end of file
@@ -10,7 +10,7 @@ import voidious.utils.DiaUtils;
 import voidious.utils.KnnView;
 import voidious.utils.TimestampedFiringAngle;
 import voidious.utils.Wave;
-import ags.utils.dataStructures.Entry;
+import ags.utils.dataStructures.ResultHeap;
 
 /**
  * Copyright (c) 2009-2012 - Voidious
@@ -46,6 +46,11 @@ public class TripHammerKnnGun extends DuelGun<TimestampedFiringAngle>
 	private int numFiringAngles;
 	private int maxK;
 	private int kDivisor;
+	private double[] queryWeights;
+	private ResultHeap neighbors;
+	private double[] firingAngles;
+	private double[] scanWeights;
+	private double[] realAngles;
 
 	public TripHammerKnnGun(GunDataManager gunDataManager, BattleField battleField)
 	{
@@ -53,6 +58,11 @@ public class TripHammerKnnGun extends DuelGun<TimestampedFiringAngle>
 		this.numFiringAngles = FIRING_ANGLES;
 		this.maxK = MAX_K_SIZE;
 		this.kDivisor = K_DIVISOR;
+		this.queryWeights = new double[INITIAL_WEIGHTS.length];
+		this.neighbors = new ResultHeap(this.maxK);
+		this.firingAngles = new double[this.maxK];
+		this.scanWeights = new double[this.maxK];
+		this.realAngles = new double[this.numFiringAngles];
 	}
 
 	@Override
@@ -72,58 +82,55 @@ public class TripHammerKnnGun extends DuelGun<TimestampedFiringAngle>
 			return w.getAbsBearing();
 		}
 
-		view.setWeights(this.getWeights(view.size()));
-		List<Entry<TimestampedFiringAngle>> nearestNeighbors = view.nearestNeighbors(w, true);
-		int numScans = nearestNeighbors.size();
-		Double[] firingAngles = new Double[numScans];
-		double[] weights = new double[numScans];
+		view.nearestNeighbors(w, true, this.getWeights(viewSize), this.neighbors);
+		int numScans = this.neighbors.getValues();
+		Object[] neighborValues = this.neighbors.getData();
+		double[] neighborDistances = this.neighbors.getDistance();
 		for (int x = 0; x < numScans; x++)
 		{
-			double guessFactor = nearestNeighbors.get(x).getValue().getGuessFactor();
-			firingAngles[x] = Double.valueOf(Utils.normalRelativeAngle((guessFactor * w.getOrbitDirection() * w
-					.preciseEscapeAngle(guessFactor >= 0))));
-			weights[x] = 1 / Math.sqrt(nearestNeighbors.get(x).getDistance());
+			double guessFactor = ((TimestampedFiringAngle) neighborValues[x]).getGuessFactor();
+			this.firingAngles[x] = Utils.normalRelativeAngle((guessFactor * w.getOrbitDirection() * w
+					.preciseEscapeAngle(guessFactor >= 0)));
+			this.scanWeights[x] = 1 / Math.sqrt(neighborDistances[x]);
 		}
 
 		double bandwidth = 2 * DiaUtils.botWidthAimAngle(w.getSourceLocation().distance(w.getTargetLocation()));
-		Double bestAngle = null;
+		boolean foundAngle = false;
+		double bestAngle = 0;
 		double bestDensity = Double.NEGATIVE_INFINITY;
-		double[] realAngles = DiaUtils.generateFiringAngles(this.numFiringAngles, w.getMaxEscapeAngle());
+		DiaUtils.generateFiringAngles(this.realAngles, w.getMaxEscapeAngle());
 
 		for (int x = 0; x < this.numFiringAngles; x++)
 		{
 			double density = 0;
 			for (int y = 0; y < numScans; y++)
 			{
-				if (firingAngles[y] == null)
-				{
-					continue;
-				}
-				double ux = (realAngles[x] - firingAngles[y].doubleValue()) / bandwidth;
+				double ux = (this.realAngles[x] - this.firingAngles[y]) / bandwidth;
 				if (Math.abs(ux) < 1)
 				{
-					density += (1 - DiaUtils.cube(Math.abs(ux))) * weights[y];
+					density += (1 - DiaUtils.cube(Math.abs(ux))) * this.scanWeights[y];
 				}
 			}
 
 			if (density > bestDensity)
 			{
-				bestAngle = Double.valueOf(realAngles[x]);
+				foundAngle = true;
+				bestAngle = this.realAngles[x];
 				bestDensity = density;
 			}
 		}
 
-		if (bestAngle == null)
+		if (!foundAngle)
 		{
 			return w.getAbsBearing();
 		}
 
-		return Utils.normalAbsoluteAngle(w.getAbsBearing() + bestAngle.doubleValue());
+		return Utils.normalAbsoluteAngle(w.getAbsBearing() + bestAngle);
 	}
 
 	private double[] getWeights(int viewSize)
 	{
-		double[] newWeights = new double[INITIAL_WEIGHTS.length];
+		double[] newWeights = this.queryWeights;
 		for (int x = 0; x < newWeights.length; x++)
 		{
 			newWeights[x] = INITIAL_WEIGHTS[x]
@@ -138,7 +145,7 @@ public class TripHammerKnnGun extends DuelGun<TimestampedFiringAngle>
 	{
 		List<KnnView<TimestampedFiringAngle>> views = new ArrayList<>();
 		KnnView<TimestampedFiringAngle> view = new KnnView<TimestampedFiringAngle>(this.getFormula()).setK(this.maxK)
-				.setKDivisor(this.kDivisor).visitsOn().virtualWavesOn().setName(VIEW_NAME);
+				.setKDivisor(this.kDivisor).visitsOn().virtualWavesOn().floatStorageOn().setName(VIEW_NAME);
 		views.add(view);
 		return views;
 	}
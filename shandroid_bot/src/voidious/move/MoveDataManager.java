@@ -35,6 +35,7 @@ class MoveDataManager extends EnemyDataManager<MoveEnemy>
 	private static final double NON_ZERO_VELOCITY_THRESHOLD = 0.1;
 	private static final double DIRECTION_CHANGE_THRESHOLD = Math.PI / 2;
 	private static final long EARLIEST_FIRE_TIME = 30L;
+	private static final int MY_STATE_LOG_TICKS = 1000;
 
 	private double previousHeading;
 	private double currentHeading;
@@ -51,7 +52,7 @@ class MoveDataManager extends EnemyDataManager<MoveEnemy>
 	{
 		super(enemiesTotal, battleField, predictor);
 		this.previousVelocity = this.lastVelocity = this.lastNonZeroVelocity = 0;
-		this.myStateLog = new RobotStateLog();
+		this.myStateLog = new RobotStateLog(MY_STATE_LOG_TICKS);
 		this.firedBullets = new ArrayList<>();
 	}
 
@@ -70,7 +71,7 @@ class MoveDataManager extends EnemyDataManager<MoveEnemy>
 		this.removeOldFiredBullets(time);
 		if (this.duelEnemy() != null)
 		{
-			this.duelEnemy().execute1v1(round, time, myLocation);
+			this.duelEnemy().execute1v1(round, time, this.myStateLog);
 		}
 		else
 		{
@@ -189,11 +190,6 @@ class MoveDataManager extends EnemyDataManager<MoveEnemy>
 		{
 			System.out.println(this.warning() + "A bot shot me that I never knew existed! (" + botName + ")");
 		}
-
-		if (this.getDuelEnemy() != null)
-		{
-			this.getDuelEnemy().clearNeighborCache();
-		}
 	}
 
 	void onBulletHitBullet(BulletHitBulletEvent e, int currentRound, long currentTime)
@@ -218,7 +214,6 @@ class MoveDataManager extends EnemyDataManager<MoveEnemy>
 		if (this.getDuelEnemy() != null)
 		{
 			this.getDuelEnemy().resetBulletShadows(this.firedBullets);
-			this.getDuelEnemy().clearNeighborCache();
 		}
 	}
 
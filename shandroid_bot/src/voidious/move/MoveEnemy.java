@@ -98,7 +98,6 @@ class MoveEnemy extends Enemy<TimestampedGuessFactor>
 		this.lastBulletFireTime = 0;
 		this.lastBulletPower = 0;
 		this.imaginaryWave = null;
-		this.clearNeighborCache();
 	}
 
 	private void initSurfViews()
@@ -106,21 +105,25 @@ class MoveEnemy extends Enemy<TimestampedGuessFactor>
 		KnnView<TimestampedGuessFactor> simple = new KnnView<TimestampedGuessFactor>(new SimpleFormula()).setWeight(3).setK(25)
 				.setKDivisor(5).bulletHitsOn();
 
+		// These all log bullet hits with NormalFormula, so they share one copy
+		// of the data.
+		KnnStore<TimestampedGuessFactor> normalHits = new KnnStore<>(new NormalFormula());
+
 		// TODO: reconfigure all this, hit threshold = 3.0 makes no sense
-		KnnView<TimestampedGuessFactor> normal = new KnnView<TimestampedGuessFactor>(new NormalFormula()).setWeight(40).setK(20)
+		KnnView<TimestampedGuessFactor> normal = new KnnView<>(normalHits).setWeight(40).setK(20)
 				.setKDivisor(5).setHitThreshold(3.0).bulletHitsOn();
 
-		KnnView<TimestampedGuessFactor> recent = new KnnView<TimestampedGuessFactor>(new NormalFormula()).setWeight(100).setK(1)
+		KnnView<TimestampedGuessFactor> recent = new KnnView<>(normalHits).setWeight(100).setK(1)
 				.setMaxDataPoints(1).setHitThreshold(RECENT_SCANS_HIT_THRESHOLD).bulletHitsOn();
-		KnnView<TimestampedGuessFactor> recent2 = new KnnView<TimestampedGuessFactor>(new NormalFormula()).setWeight(100).setK(1)
+		KnnView<TimestampedGuessFactor> recent2 = new KnnView<>(normalHits).setWeight(100).setK(1)
 				.setMaxDataPoints(5).setHitThreshold(RECENT_SCANS_HIT_THRESHOLD).bulletHitsOn();
-		KnnView<TimestampedGuessFactor> recent3 = new KnnView<TimestampedGuessFactor>(new NormalFormula()).setWeight(100).setK(1)
+		KnnView<TimestampedGuessFactor> recent3 = new KnnView<>(normalHits).setWeight(100).setK(1)
 				.setHitThreshold(RECENT_SCANS_HIT_THRESHOLD).setDecayRate(DECAY_RATE).bulletHitsOn();
-		KnnView<TimestampedGuessFactor> recent4 = new KnnView<TimestampedGuessFactor>(new NormalFormula()).setWeight(100).setK(7)
+		KnnView<TimestampedGuessFactor> recent4 = new KnnView<>(normalHits).setWeight(100).setK(7)
 				.setKDivisor(4).setHitThreshold(RECENT_SCANS_HIT_THRESHOLD).setDecayRate(DECAY_RATE).bulletHitsOn();
-		KnnView<TimestampedGuessFactor> recent5 = new KnnView<TimestampedGuessFactor>(new NormalFormula()).setWeight(100)
+		KnnView<TimestampedGuessFactor> recent5 = new KnnView<>(normalHits).setWeight(100)
 				.setK(35).setKDivisor(3).setHitThreshold(RECENT_SCANS_HIT_THRESHOLD).setDecayRate(DECAY_RATE).bulletHitsOn();
-		KnnView<TimestampedGuessFactor> recent6 = new KnnView<TimestampedGuessFactor>(new NormalFormula()).setWeight(100)
+		KnnView<TimestampedGuessFactor> recent6 = new KnnView<>(normalHits).setWeight(100)
 				.setK(100).setKDivisor(2).setHitThreshold(RECENT_SCANS_HIT_THRESHOLD).setDecayRate(DECAY_RATE).bulletHitsOn();
 
 		KnnView<TimestampedGuessFactor> lightFlattener = new KnnView<TimestampedGuessFactor>(new NormalFormula()).setWeight(10)
@@ -145,9 +148,9 @@ class MoveEnemy extends Enemy<TimestampedGuessFactor>
 		this.addView(flattener2);
 	}
 
-	void execute1v1(int currentRound, long currentTime, Point2D.Double myLocation)
+	void execute1v1(int currentRound, long currentTime, RobotStateLog myStateLog)
 	{
-		this.getWaveManager().checkActiveWaves(currentTime, new RobotState(myLocation, currentTime, 0.0, 1, false),
+		this.getWaveManager().checkActiveWaves(currentTime, myStateLog.getState(currentTime), myStateLog,
 				this.newWaveBreakListener(currentRound, currentTime));
 	}
 
@@ -165,8 +168,9 @@ class MoveEnemy extends Enemy<TimestampedGuessFactor>
 		}
 
 		double hitGuessFactor = hitWave.guessFactor(bulletLocation);
-		this.getViews().values().stream().filter(view -> view.logBulletHits)
-				.forEach(view -> view.logWave(hitWave, new TimestampedGuessFactor(currentRound, currentTime, hitGuessFactor)));
+		TimestampedGuessFactor hitFactor = new TimestampedGuessFactor(currentRound, currentTime, hitGuessFactor);
+		this.getViews().values().stream().filter(view -> view.logBulletHits).map(KnnView::getStore).distinct()
+				.forEach(store -> store.logWave(hitWave, hitFactor));
 
 		return hitWave;
 	}
@@ -184,11 +188,6 @@ class MoveEnemy extends Enemy<TimestampedGuessFactor>
 		return botsCloser;
 	}
 
-	void clearNeighborCache()
-	{
-		this.getViews().values().forEach(KnnView::clearCache);
-	}
-
 	double getGunHeat(long time)
 	{
 		double gunHeat;
@@ -213,7 +212,7 @@ class MoveEnemy extends Enemy<TimestampedGuessFactor>
 		this.getWaveManager().forAllWaves(w -> {
             if (w.isFiringWave())
             {
-                w.getShadows().clear();
+                w.clearShadows();
                 for (FiredBullet bullet : firedBullets)
                 {
                     MoveEnemy.this.setShadows(w, bullet);
@@ -350,7 +349,6 @@ class MoveEnemy extends Enemy<TimestampedGuessFactor>
 		double enemyGunHeat = this.getGunHeat(currentTime);
 		if (this.imaginaryWaveIndex >= 0 && enemyGunHeat < 0.1000001)
 		{
-			this.clearNeighborCache();
 			Point2D.Double aimedFromLocation;
 
 			if (enemyGunHeat < 0.0000001 && this.getWaveManager().size() >= 2)
@@ -438,10 +436,6 @@ class MoveEnemy extends Enemy<TimestampedGuessFactor>
 					this.getBattleField().orbitalWallDistance(aimedFromLocation, enemyWave.getTargetLocation(),
 							this.lastBulletPower, -enemyWave.getOrbitDirection())));
 
-			if (this.imaginaryWave != null)
-			{
-				this.clearNeighborCache();
-			}
 			this.imaginaryWave = null;
 
 			enemyWave.setFiringWave(true);
@@ -496,10 +490,14 @@ class MoveEnemy extends Enemy<TimestampedGuessFactor>
             {
                 Intersection preciseIntersection = w.preciseIntersection(waveBreakStates);
 
-				MoveEnemy.this.getViews().values().stream().filter(view -> view.logVisits).forEach(view -> {
-					double guessFactor = w.guessFactor(preciseIntersection.getAngle());
-					view.logWave(w, new TimestampedGuessFactor(currentRound, currentTime, guessFactor));
-				});
+				// A wave that only grazed us has no hit angle to log as a visit
+				if (preciseIntersection != null)
+				{
+					TimestampedGuessFactor visitFactor = new TimestampedGuessFactor(currentRound, currentTime,
+							w.guessFactor(preciseIntersection.getAngle()));
+					MoveEnemy.this.getViews().values().stream().filter(view -> view.logVisits).map(KnnView::getStore)
+							.distinct().forEach(store -> store.logWave(w, visitFactor));
+				}
 
                 if (!w.isBulletHitBullet())
                 {
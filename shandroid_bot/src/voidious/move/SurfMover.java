@@ -1,6 +1,6 @@
 package voidious.move;
 
-import ags.utils.dataStructures.Entry;
+import ags.utils.dataStructures.ResultHeap;
 import robocode.AdvancedRobot;
 import robocode.Rules;
 import robocode.util.Utils;
@@ -47,6 +47,8 @@ class SurfMover
 	private DistanceController distancer;
 	private Wave lastWaveSurfed;
 	private MovementPredictor predictor;
+	private ResultHeap neighbors;
+	private double[] decayWeights;
 
 	SurfMover(AdvancedRobot robot, BattleField battleField)
 	{
@@ -56,6 +58,8 @@ class SurfMover
 		this.surfOptionDangers = new HashMap<>();
 		this.surfOptionDestinations = new HashMap<>();
 		this.distancer = new DistanceController();
+		this.neighbors = new ResultHeap(1);
+		this.decayWeights = new double[0];
 	}
 
 	public void initRound()
@@ -116,7 +120,6 @@ class SurfMover
 	{
 		if (surfWave != this.lastWaveSurfed)
 		{
-			duelEnemy.clearNeighborCache();
 			this.lastWaveSurfed = surfWave;
 			this.lastSurfDestination = null;
 			this.stopDestination = null;
@@ -156,12 +159,13 @@ class SurfMover
 
 	private void updateSurfDangers(RobotState myRobotState, MoveEnemy duelEnemy, int wavesToSurf, boolean goingClockwise)
 	{
+		this.prefetchNeighbors(myRobotState, duelEnemy, wavesToSurf);
 		List<SurfOption> surfOptions = this.getSortedSurfOptions();
 		double bestSurfDanger = Double.POSITIVE_INFINITY;
 		for (SurfOption testOption : surfOptions)
 		{
 			double testDanger = this.checkDanger(myRobotState, duelEnemy, myRobotState, testOption, goingClockwise,
-					Wave.FIRST_WAVE, wavesToSurf, bestSurfDanger, new RobotStateLog());
+					Wave.FIRST_WAVE, wavesToSurf, bestSurfDanger, RobotStatePath.EMPTY);
 			this.surfOptionDangers.put(testOption, testDanger);
 			bestSurfDanger = Math.min(bestSurfDanger, testDanger);
 		}
@@ -199,7 +203,7 @@ class SurfMover
 	// TODO: make previouslyMovingClockwise either SurfOption or int
 	private double checkDanger(RobotState myRobotState, MoveEnemy duelEnemy, RobotState startState, SurfOption surfOption,
 			boolean previouslyMovingClockwise, int surfWaveIndex, int numWavesToSurf, double cutoffDanger,
-			RobotStateLog predictedStateLog)
+			RobotStatePath predictedPath)
 	{
 		Wave surfWave = duelEnemy.findSurfableWave(surfWaveIndex, myRobotState);
 		if (surfWave == null)
@@ -211,7 +215,7 @@ class SurfMover
 		WavePosition startWavePosition = surfWave.checkWavePosition(startState);
 		if (surfWaveIndex > Wave.FIRST_WAVE && startWavePosition != WavePosition.MIDAIR)
 		{
-			dangerStates.addAll(this.replaySurfStates(surfWave, predictedStateLog));
+			dangerStates.addAll(this.replaySurfStates(surfWave, predictedPath));
 		}
 
 		if (startWavePosition == WavePosition.GONE && dangerStates.isEmpty())
@@ -275,34 +279,39 @@ class SurfMover
 			}
 			else
 			{
-				predictedStateLog.addState(predictedState);
+				predictedPath = predictedPath.addState(predictedState);
 				predictedState = this.predictSurfLocation(predictedState, surfDestination, maxVelocity, smoothingSurfOption);
 			}
 		}
 		while (!wavePassed);
 
 		Intersection intersection = surfWave.preciseIntersection(dangerStates);
-		double baseDangerScore = this.normalizedEnemyHitRate(duelEnemy) * BASE_DANGER_FACTOR;
-		double danger = baseDangerScore + this.getDangerScore(duelEnemy, surfWave, intersection, surfWaveIndex);
-		danger *= surfWave.shadowFactor(intersection);
-		danger *= Rules.getBulletDamage(surfWave.getBulletPower());
-		double currentDistanceToWaveSource = myRobotState.getLocation().distance(surfWave.getSourceLocation());
-		double currentDistanceToWave = currentDistanceToWaveSource - surfWave.distanceTraveled(this.robot.getTime());
-		double timeToImpact = Math.max(1, currentDistanceToWave / surfWave.getBulletSpeed());
-		danger /= timeToImpact;
-
-		danger *= this.distancingDanger(startState.getLocation(), passedState.getLocation(), duelEnemy.getLastScanState()
-				.getLocation());
+		double danger = 0;
+		// A path that never crosses the wave can't be hit by it
+		if (intersection != null)
+		{
+			double baseDangerScore = this.normalizedEnemyHitRate(duelEnemy) * BASE_DANGER_FACTOR;
+			danger = baseDangerScore + this.getDangerScore(duelEnemy, surfWave, intersection);
+			danger *= surfWave.shadowFactor(intersection);
+			danger *= Rules.getBulletDamage(surfWave.getBulletPower());
+			double currentDistanceToWaveSource = myRobotState.getLocation().distance(surfWave.getSourceLocation());
+			double currentDistanceToWave = currentDistanceToWaveSource - surfWave.distanceTraveled(this.robot.getTime());
+			double timeToImpact = Math.max(1, currentDistanceToWave / surfWave.getBulletSpeed());
+			danger /= timeToImpact;
+
+			danger *= this.distancingDanger(startState.getLocation(), passedState.getLocation(), duelEnemy
+					.getLastScanState().getLocation());
+		}
 
 		if (surfWaveIndex + 1 < numWavesToSurf && danger < cutoffDanger)
 		{
 			double nextCounterClockwiseDanger = this.checkDanger(myRobotState, duelEnemy, passedState,
 					SurfOption.COUNTER_CLOCKWISE, predictClockwise, surfWaveIndex + 1, numWavesToSurf, cutoffDanger,
-					(RobotStateLog) predictedStateLog.clone());
+					predictedPath);
 			double nextStopDanger = this.checkDanger(myRobotState, duelEnemy, passedState, SurfOption.STOP, predictClockwise,
-					surfWaveIndex + 1, numWavesToSurf, cutoffDanger, (RobotStateLog) predictedStateLog.clone());
+					surfWaveIndex + 1, numWavesToSurf, cutoffDanger, predictedPath);
 			double nextClockwiseDanger = this.checkDanger(myRobotState, duelEnemy, passedState, SurfOption.CLOCKWISE,
-					predictClockwise, surfWaveIndex + 1, numWavesToSurf, cutoffDanger, (RobotStateLog) predictedStateLog.clone());
+					predictClockwise, surfWaveIndex + 1, numWavesToSurf, cutoffDanger, predictedPath);
 
 			danger += Math.min(nextCounterClockwiseDanger, Math.min(nextStopDanger, nextClockwiseDanger));
 		}
@@ -319,16 +328,28 @@ class SurfMover
 		return (surfOption == SurfOption.CLOCKWISE);
 	}
 
-	private List<RobotState> replaySurfStates(final Wave surfWave, RobotStateLog predictedStateLog)
+	/**
+	 * The states on the predicted path that the wave was breaking over, oldest
+	 * first. A wave closes on a bot faster than any bot can move, so walking
+	 * back from the newest state, once the wave is still in midair it's in
+	 * midair for every older state too.
+	 */
+	private List<RobotState> replaySurfStates(Wave surfWave, RobotStatePath predictedPath)
 	{
-		final List<RobotState> dangerStates = new ArrayList<>();
-		predictedStateLog.forAllStates(state -> {
-            WavePosition pastWavePosition = surfWave.checkWavePosition(state);
-            if (pastWavePosition.isBreaking())
-            {
-                dangerStates.add(state);
-            }
-        });
+		List<RobotState> dangerStates = new ArrayList<>();
+		for (RobotStatePath path = predictedPath; !path.isEmpty(); path = path.getPrevious())
+		{
+			WavePosition pastWavePosition = surfWave.checkWavePosition(path.getState());
+			if (pastWavePosition == WavePosition.MIDAIR)
+			{
+				break;
+			}
+			if (pastWavePosition.isBreaking())
+			{
+				dangerStates.add(path.getState());
+			}
+		}
+		Collections.reverse(dangerStates);
 		return dangerStates;
 	}
 
@@ -368,7 +389,7 @@ class SurfMover
 		return Math.pow(DISTANCING_DANGER_BASE, distanceQuotient) / DISTANCING_DANGER_BASE;
 	}
 
-	private double getDangerScore(MoveEnemy duelEnemy, Wave w, Intersection intersection, int surfWaveIndex)
+	private double getDangerScore(MoveEnemy duelEnemy, Wave w, Intersection intersection)
 	{
 		double dangerAngle = intersection.getAngle();
 		double bandwidth = intersection.getBandwidth();
@@ -382,14 +403,17 @@ class SurfMover
 			if (view.enabled(hitPercentage, marginOfError))
 			{
 				enabledSize += view.size();
-				List<Entry<TimestampedGuessFactor>> nearestNeighbors = this.getNearestNeighbors(view, w, surfWaveIndex);
-				Map<Timestamped, Double> weightMap = view.getDecayWeights(nearestNeighbors);
+				view.nearestNeighbors(w, false, this.neighbors);
+				this.decayWeights = view.getDecayWeights(this.neighbors, this.decayWeights);
 
 				double density = 0;
 				double viewScanWeight = 0;
-				for (Entry<TimestampedGuessFactor> nearestNeighbor : nearestNeighbors) {
-					TimestampedGuessFactor tsgf = nearestNeighbor.getValue();
-					double scanWeight = weightMap.get(tsgf) / Math.sqrt(nearestNeighbor.getDistance());
+				int numScans = this.neighbors.getValues();
+				Object[] neighborValues = this.neighbors.getData();
+				double[] neighborDistances = this.neighbors.getDistance();
+				for (int x = 0; x < numScans; x++) {
+					TimestampedGuessFactor tsgf = (TimestampedGuessFactor) neighborValues[x];
+					double scanWeight = this.decayWeights[x] / Math.sqrt(neighborDistances[x]);
 					double xFiringAngle = DiaUtils.normalizeAngle(w.firingAngle(tsgf.getGuessFactor()), dangerAngle);
 					if (!w.shadowed(xFiringAngle)) {
 						double ux = (xFiringAngle - dangerAngle) / bandwidth;
@@ -410,14 +434,33 @@ class SurfMover
 		return totalDanger / totalScanWeight;
 	}
 
-	private List<Entry<TimestampedGuessFactor>> getNearestNeighbors(KnnView<TimestampedGuessFactor> view, Wave w,
-			int surfWaveIndex)
+	/**
+	 * Fills each enabled view's neighbor cache for all the waves we're about to
+	 * surf, with one batched tree search per view instead of one per wave, so
+	 * danger scoring copies its neighbors out of the cache.
+	 */
+	private void prefetchNeighbors(RobotState myRobotState, MoveEnemy duelEnemy, int wavesToSurf)
 	{
-		if (!view.cachedNeighbors.containsKey(surfWaveIndex))
+		List<Wave> surfWaves = new ArrayList<>();
+		for (int x = Wave.FIRST_WAVE; x < wavesToSurf; x++)
 		{
-			view.cachedNeighbors.put(surfWaveIndex, view.nearestNeighbors(w, false));
+			Wave surfWave = duelEnemy.findSurfableWave(x, myRobotState);
+			if (surfWave == null)
+			{
+				break;
+			}
+			surfWaves.add(surfWave);
+		}
+
+		double hitPercentage = this.normalizedEnemyHitPercentage(duelEnemy);
+		double marginOfError = this.hitPercentageMarginOfError(duelEnemy);
+		for (KnnView<TimestampedGuessFactor> view : duelEnemy.getViews().values())
+		{
+			if (view.enabled(hitPercentage, marginOfError) && !surfWaves.isEmpty())
+			{
+				view.nearestNeighbors(surfWaves, false);
+			}
 		}
-		return view.cachedNeighbors.get(surfWaveIndex);
 	}
 
 	// TODO: move these to MoveEnemy
@@ -467,6 +510,8 @@ class SurfMover
 	{
 		System.out.println("Enemy normalized hit %: " + DiaUtils.round(this.normalizedEnemyHitPercentage(duelEnemy), 2) + "\n"
 				+ "Enemy raw hit %: " + DiaUtils.round(this.rawEnemyHitPercentage(duelEnemy), 2));
+		duelEnemy.printViewRecall();
+		duelEnemy.printViewMetrics(this.robot, "move");
 	}
 
 	private enum SurfOption
@@ -0,0 +1,182 @@
+package voidious.utils;
+
+import robocode.util.Utils;
+
+import java.util.Arrays;
+
+/**
+ * Copyright (c) 2026 - Shandroid contributors
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ * 1. The origin of this software must not be misrepresented; you must not claim
+ * that you wrote the original software.
+ * 
+ * 2. Altered source versions must be plainly marked as such, and must not be
+ * misrepresented as being the original software.
+ * 
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+/**
+ * The angles a wave is shadowed at by bullets, kept as sorted, non-overlapping
+ * intervals of absolute angle between 0 and 2 * PI. A shadow that crosses 0
+ * is stored as two intervals, one ending at 2 * PI and one starting at 0.
+ */
+class BulletShadows
+{
+	private static final double TWO_PI = 2 * Math.PI;
+
+	private double[] minAngles;
+	private double[] maxAngles;
+	private int size;
+
+	BulletShadows()
+	{
+		this.minAngles = new double[4];
+		this.maxAngles = new double[4];
+		this.size = 0;
+	}
+
+	void clear()
+	{
+		this.size = 0;
+	}
+
+	boolean isEmpty()
+	{
+		return this.size == 0;
+	}
+
+	/**
+	 * @return the number of intervals, counting a shadow that crosses 0 as two
+	 */
+	int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * Adds a shadow from 'minAngle' to 'maxAngle', which is at most 2 * PI
+	 * more, merging it with any shadows it overlaps
+	 */
+	void add(double minAngle, double maxAngle)
+	{
+		double min = Utils.normalAbsoluteAngle(minAngle);
+		double max = min + (maxAngle - minAngle);
+		if (max >= TWO_PI)
+		{
+			this.addInterval(min, TWO_PI);
+			this.addInterval(0, max - TWO_PI);
+		}
+		else
+		{
+			this.addInterval(min, max);
+		}
+	}
+
+	private void addInterval(double min, double max)
+	{
+		int from = this.firstEndingAtOrAfter(min);
+		int to = this.firstStartingAfter(max);
+		if (to > from)
+		{
+			min = Math.min(min, this.minAngles[from]);
+			max = Math.max(max, this.maxAngles[to - 1]);
+		}
+
+		int newSize = this.size + 1 - (to - from);
+		if (newSize > this.minAngles.length)
+		{
+			this.minAngles = Arrays.copyOf(this.minAngles, this.minAngles.length * 2);
+			this.maxAngles = Arrays.copyOf(this.maxAngles, this.maxAngles.length * 2);
+		}
+		System.arraycopy(this.minAngles, to, this.minAngles, from + 1, this.size - to);
+		System.arraycopy(this.maxAngles, to, this.maxAngles, from + 1, this.size - to);
+		this.minAngles[from] = min;
+		this.maxAngles[from] = max;
+		this.size = newSize;
+	}
+
+	boolean contains(double angle)
+	{
+		angle = Utils.normalAbsoluteAngle(angle);
+		int index = this.firstStartingAfter(angle) - 1;
+		return index >= 0 && this.maxAngles[index] >= angle;
+	}
+
+	/**
+	 * @return how much of the arc from 'minAngle' to 'maxAngle' is in shadow,
+	 *         as a fraction of the arc
+	 */
+	double coveredFraction(double minAngle, double maxAngle)
+	{
+		double width = maxAngle - minAngle;
+		double min = Utils.normalAbsoluteAngle(minAngle);
+		double max = min + width;
+		double covered;
+		if (max > TWO_PI)
+		{
+			covered = this.covered(min, TWO_PI) + this.covered(0, max - TWO_PI);
+		}
+		else
+		{
+			covered = this.covered(min, max);
+		}
+		return covered / width;
+	}
+
+	private double covered(double min, double max)
+	{
+		double covered = 0;
+		for (int x = this.firstEndingAtOrAfter(min); x < this.size && this.minAngles[x] <= max; x++)
+		{
+			covered += Math.min(max, this.maxAngles[x]) - Math.max(min, this.minAngles[x]);
+		}
+		return covered;
+	}
+
+	private int firstEndingAtOrAfter(double angle)
+	{
+		int low = 0;
+		int high = this.size;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (this.maxAngles[mid] < angle)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private int firstStartingAfter(double angle)
+	{
+		int low = 0;
+		int high = this.size;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (this.minAngles[mid] <= angle)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
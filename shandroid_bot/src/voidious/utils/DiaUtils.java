@@ -5,7 +5,6 @@ import robocode.util.Utils;
 
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
-import java.util.List;
 
 /**
  * Copyright (c) 2009-2012 - Voidious
@@ -157,26 +156,21 @@ public class DiaUtils
 
 	static double distancePointToBot(Point2D.Double sourceLocation, RobotState robotState)
 	{
-		return distancePointToBot(sourceLocation, robotState.getLocation(), robotState.botSides());
+		return distancePointToBot(sourceLocation.x, sourceLocation.y, robotState.getLocation().x,
+				robotState.getLocation().y);
 	}
 
-	private static double distancePointToBot(Point2D.Double sourceLocation, Point2D.Double botLocation,
-											 List<Line2D.Double> botSides)
+	static double distancePointToBot(double sourceX, double sourceY, double botX, double botY)
 	{
-		if (sourceLocation.x > botLocation.x - 18 && sourceLocation.x < botLocation.x + 18
-				&& sourceLocation.y > botLocation.y - 18 && sourceLocation.y < botLocation.y + 18)
+		if (sourceX > botX - 18 && sourceX < botX + 18 && sourceY > botY - 18 && sourceY < botY + 18)
 		{
 			return 0;
 		}
 
-		double distance = Double.POSITIVE_INFINITY;
-
-		for (Line2D.Double side : botSides)
-		{
-			distance = Math.min(distance, side.ptSegDist(sourceLocation));
-		}
-
-		return distance;
+		double distance = Line2D.ptSegDist(botX - 18, botY - 18, botX + 18, botY - 18, sourceX, sourceY);
+		distance = Math.min(distance, Line2D.ptSegDist(botX + 18, botY - 18, botX + 18, botY + 18, sourceX, sourceY));
+		distance = Math.min(distance, Line2D.ptSegDist(botX + 18, botY + 18, botX - 18, botY + 18, sourceX, sourceY));
+		return Math.min(distance, Line2D.ptSegDist(botX - 18, botY + 18, botX - 18, botY - 18, sourceX, sourceY));
 	}
 
 	public static double normalizeAngle(double angle, double reference)
@@ -192,13 +186,23 @@ public class DiaUtils
 
 	public static double[] generateFiringAngles(int numAngles, double maxEscapeAngle)
 	{
-		int gfZero = (numAngles - 1) / 2;
 		double[] firingAngles = new double[numAngles];
+		generateFiringAngles(firingAngles, maxEscapeAngle);
+		return firingAngles;
+	}
+
+	/**
+	 * Fills every element of 'firingAngles' with evenly spaced angles from
+	 * -maxEscapeAngle to maxEscapeAngle
+	 */
+	public static void generateFiringAngles(double[] firingAngles, double maxEscapeAngle)
+	{
+		int numAngles = firingAngles.length;
+		int gfZero = (numAngles - 1) / 2;
 		for (int x = 0; x < numAngles; x++)
 		{
 			firingAngles[x] = (((double) (x - gfZero)) / gfZero) * maxEscapeAngle;
 		}
-		return firingAngles;
 	}
 
 	public static double distanceToWall(Point2D.Double enemyLocation, BattleField battleField)
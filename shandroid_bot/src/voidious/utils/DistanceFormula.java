@@ -26,8 +26,24 @@ abstract public class DistanceFormula
 
 	abstract public double[] dataPointFromWave(Wave w, boolean aiming);
 
-	double[] dataPointFromWave(Wave w)
+	/**
+	 * The wave's data point, computed once per wave, aiming flag and formula
+	 * until one of the wave's setters is called. The array is shared, so
+	 * callers mustn't modify it.
+	 */
+	public double[] dataPoint(Wave w, boolean aiming)
 	{
-		return this.dataPointFromWave(w, false);
+		double[] dataPoint = w.memoizedDataPoint(this, aiming);
+		if (dataPoint == null)
+		{
+			dataPoint = this.dataPointFromWave(w, aiming);
+			w.memoizeDataPoint(this, aiming, dataPoint);
+		}
+		return dataPoint;
+	}
+
+	double[] dataPoint(Wave w)
+	{
+		return this.dataPoint(w, false);
 	}
 }
@@ -1,6 +1,9 @@
 package voidious.utils;
 
+import robocode.AdvancedRobot;
+
 import java.awt.geom.Point2D;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +31,7 @@ import java.util.Map;
 public class Enemy<T extends Timestamped>
 {
 	private static final double DEFAULT_ENERGY = 100;
+	private static final int STATE_LOG_TICKS = 1000;
 	protected static final boolean IS_BULLET_HIT = false;
 	protected static final boolean IS_VISIT = true;
 
@@ -63,7 +67,7 @@ public class Enemy<T extends Timestamped>
 		this.damageGiven = 0;
 		this.alive = true;
 		this.views = new HashMap<>();
-		this.stateLog = new RobotStateLog();
+		this.stateLog = new RobotStateLog(STATE_LOG_TICKS);
 		this.setRobotState(new RobotState(location, heading, velocity, time, false));
 		this.botDistancesSq = new HashMap<>();
 	}
@@ -88,6 +92,45 @@ public class Enemy<T extends Timestamped>
 		this.views.put(view.name, view);
 	}
 
+	/**
+	 * Print the measured recall of any views searching approximately
+	 */
+	public void printViewRecall()
+	{
+		for (KnnView<T> view : this.views.values())
+		{
+			KnnStore<T> store = view.getStore();
+			if (store.getRecallSamples() > 0)
+			{
+				System.out.println("Recall for " + view.name + ": " + DiaUtils.round(store.getRecall() * 100, 2) + "% ("
+						+ store.getRecallSamples() + " samples)");
+			}
+		}
+	}
+
+	/**
+	 * Print each view's query metrics and append them to the metrics file,
+	 * if metrics are on
+	 */
+	public void printViewMetrics(AdvancedRobot robot, String source)
+	{
+		List<String> rows = new ArrayList<>();
+		for (KnnView<T> view : this.views.values())
+		{
+			KnnMetrics metrics = view.getMetrics();
+			if (metrics != null)
+			{
+				System.out.println(metrics.summary(view.name, view, view.getStore().getStats()));
+				rows.add(metrics.csvRow(robot.getRoundNum(), source, this.botName, view.name, view,
+						view.getStore().getStats()));
+			}
+		}
+		if (!rows.isEmpty())
+		{
+			KnnMetrics.writeCsv(robot, rows);
+		}
+	}
+
 	public void setRobotState(RobotState robotState)
 	{
 		this.lastScanState = robotState;
@@ -0,0 +1,157 @@
+package voidious.utils;
+
+import ags.utils.dataStructures.IndexStats;
+import robocode.AdvancedRobot;
+import robocode.RobocodeFileWriter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Copyright (c) 2026 - Shandroid contributors
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ * 1. The origin of this software must not be misrepresented; you must not claim
+ * that you wrote the original software.
+ *
+ * 2. Altered source versions must be plainly marked as such, and must not be
+ * misrepresented as being the original software.
+ *
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+/**
+ * Query counts and costs for one KnnView. Views only keep these while metrics
+ * are enabled; otherwise a view has none and skips all of the bookkeeping.
+ * Node, leaf and distance counts are the view's share of its store's tree
+ * work, taken as the difference across each query.
+ */
+public class KnnMetrics
+{
+	public static boolean enabled = false;
+
+	private static final String CSV_FILE = "knn-metrics.csv";
+	private static final String CSV_HEADER = "round,source,enemy,view,queries,nanos,nodes,leaves,distances,"
+			+ "cacheHits,cacheMisses,storeInserts,storeEvictions";
+	private static boolean csvStarted = false;
+
+	private long queries;
+	private long nanos;
+	private long nodesVisited;
+	private long leavesVisited;
+	private long distanceEvaluations;
+
+	private long queryStartNanos;
+	private long queryStartNodes;
+	private long queryStartLeaves;
+	private long queryStartDistances;
+
+	void startQuery(IndexStats stats)
+	{
+		this.queryStartNodes = stats.getNodesVisited();
+		this.queryStartLeaves = stats.getLeavesVisited();
+		this.queryStartDistances = stats.getDistanceEvaluations();
+		this.queryStartNanos = System.nanoTime();
+	}
+
+	void endQuery(IndexStats stats, int numQueries)
+	{
+		this.nanos += System.nanoTime() - this.queryStartNanos;
+		this.queries += numQueries;
+		this.nodesVisited += stats.getNodesVisited() - this.queryStartNodes;
+		this.leavesVisited += stats.getLeavesVisited() - this.queryStartLeaves;
+		this.distanceEvaluations += stats.getDistanceEvaluations() - this.queryStartDistances;
+	}
+
+	String summary(String name, KnnView<?> view, IndexStats stats)
+	{
+		double perQuery = 1.0 / Math.max(1, this.queries);
+		long lookups = view.getCacheHits() + view.getCacheMisses();
+		return "KNN view " + name + ": " + this.queries + " queries, " + DiaUtils.round(this.nanos * perQuery / 1000, 2)
+				+ " us, " + DiaUtils.round(this.nodesVisited * perQuery, 1) + " nodes, "
+				+ DiaUtils.round(this.leavesVisited * perQuery, 1) + " leaves, "
+				+ DiaUtils.round(this.distanceEvaluations * perQuery, 1) + " distances per query; "
+				+ DiaUtils.round(100.0 * view.getCacheHits() / Math.max(1, lookups), 1) + "% cache hits; "
+				+ stats.getInserts() + " inserts, " + stats.getEvictions() + " evictions in its store";
+	}
+
+	String csvRow(int round, String source, String botName, String name, KnnView<?> view, IndexStats stats)
+	{
+		return round + "," + source + "," + botName + "," + name + "," + this.queries + "," + this.nanos + ","
+				+ this.nodesVisited + "," + this.leavesVisited + "," + this.distanceEvaluations + ","
+				+ view.getCacheHits() + "," + view.getCacheMisses() + "," + stats.getInserts() + ","
+				+ stats.getEvictions();
+	}
+
+	/**
+	 * Appends rows to this battle's metrics file in the robot's data
+	 * directory, starting the file over the first time per battle
+	 */
+	static void writeCsv(AdvancedRobot robot, List<String> rows)
+	{
+		boolean append = csvStarted;
+		csvStarted = true;
+		try (RobocodeFileWriter rfw = new RobocodeFileWriter(robot.getDataFile(CSV_FILE).getAbsolutePath(), append))
+		{
+			if (!append)
+			{
+				rfw.write(CSV_HEADER + "\n");
+			}
+			for (String row : rows)
+			{
+				rfw.write(row + "\n");
+			}
+		}
+		catch (IOException ioe)
+		{
+			System.out.println("Could not write " + CSV_FILE + ".");
+		}
+	}
+
+	/**
+	 * @return the queries
+	 */
+	public long getQueries()
+	{
+		return this.queries;
+	}
+
+	/**
+	 * @return the nanos
+	 */
+	public long getNanos()
+	{
+		return this.nanos;
+	}
+
+	/**
+	 * @return the nodesVisited
+	 */
+	public long getNodesVisited()
+	{
+		return this.nodesVisited;
+	}
+
+	/**
+	 * @return the leavesVisited
+	 */
+	public long getLeavesVisited()
+	{
+		return this.leavesVisited;
+	}
+
+	/**
+	 * @return the distanceEvaluations
+	 */
+	public long getDistanceEvaluations()
+	{
+		return this.distanceEvaluations;
+	}
+}
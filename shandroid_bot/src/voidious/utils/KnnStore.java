@@ -0,0 +1,826 @@
+package voidious.utils;
+
+import ags.utils.dataStructures.Entry;
+import ags.utils.dataStructures.IndexStats;
+import ags.utils.dataStructures.NearestNeighborIndex;
+import ags.utils.dataStructures.ResultHeap;
+import ags.utils.dataStructures.WeightedSqrEuclid;
+import ags.utils.dataStructures.trees.thirdGenTrees.KdTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copyright (c) 2026 - Shandroid contributors
+ * Contains code moved from KnnView, Copyright (c) 2009-2012 - Voidious, and
+ * altered for Shandroid
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ * 1. The origin of this software must not be misrepresented; you must not claim
+ * that you wrote the original software.
+ *
+ * 2. Altered source versions must be plainly marked as such, and must not be
+ * misrepresented as being the original software.
+ *
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+/**
+ * The data points behind one or more KnnViews. A view that owns its store
+ * works directly on the tree. When several views share a store, each point is
+ * logged once, full-history views share one sorted search per query point and
+ * take as many neighbors as they need, and last-N views scan a small ring of
+ * the most recent points.
+ */
+public class KnnStore<T>
+{
+	/**
+	 * Which nearest neighbor index holds the store's points
+	 */
+	public enum IndexType
+	{
+		/**
+		 * ags.utils.KdTree: supports size limits, batched searches and
+		 * insertion sequence numbers
+		 */
+		KD_TREE,
+		/**
+		 * The third generation tree: unbounded stores without decay only
+		 */
+		THIRD_GEN_KD_TREE
+	}
+
+	private DistanceFormula formula;
+	private IndexType indexType;
+	private boolean floatStorage;
+	private boolean rebuildOnWeightDrift;
+	private NearestNeighborIndex<T> tree;
+	private int maxDataPoints;
+	private int views;
+	private int maxK;
+	private boolean needsSequences;
+	private long nextSequence;
+	private ResultHeap[] batchResults;
+	private ResultHeap queryResults;
+	// Bumped whenever points are logged (and old ones evicted) or the
+	// distance measure changes, so views can tell when cached results are stale
+	private long version;
+	// Work counters for metrics, null unless a view turned them on
+	private IndexStats stats;
+
+	// Approximate search, off while approxMaxLeaves is 0. Every
+	// recallSampleInterval-th approximate search is repeated exactly to
+	// measure recall.
+	private double approxEpsilon;
+	private int approxMaxLeaves;
+	private int recallSampleInterval;
+	private int approxSearches;
+	private int recallSamples;
+	private double recallTotal;
+	private ResultHeap exactResults;
+
+	// Shared stores only: the most recent points, oldest first from
+	// windowStart, and the sorted neighbors found for the most recently used
+	// queries, keyed by query point.
+	private double[] windowPoints;
+	private Object[] windowValues;
+	private long[] windowSequences;
+	private int windowStart;
+	private int windowCount;
+	private QueryCache<T> queryCache;
+
+	public KnnStore(DistanceFormula formula)
+	{
+		this.formula = formula;
+		this.indexType = IndexType.KD_TREE;
+		this.floatStorage = false;
+		this.rebuildOnWeightDrift = false;
+		this.maxDataPoints = 0;
+		this.views = 0;
+		this.maxK = 1;
+		this.needsSequences = false;
+		this.nextSequence = 0;
+		this.batchResults = new ResultHeap[0];
+		this.queryResults = new ResultHeap(1);
+		this.approxEpsilon = 0;
+		this.approxMaxLeaves = 0;
+		this.recallSampleInterval = 0;
+		this.approxSearches = 0;
+		this.recallSamples = 0;
+		this.recallTotal = 0;
+		this.exactResults = new ResultHeap(1);
+		this.windowPoints = new double[0];
+		this.windowValues = new Object[0];
+		this.windowSequences = new long[0];
+		this.windowStart = 0;
+		this.windowCount = 0;
+		this.queryCache = new QueryCache<>();
+		this.initTree();
+	}
+
+	private void initTree()
+	{
+		if (this.indexType == IndexType.THIRD_GEN_KD_TREE)
+		{
+			if (this.maxDataPoints > 0)
+			{
+				throw new IllegalStateException("Third generation trees can't limit their size");
+			}
+			if (this.needsSequences)
+			{
+				throw new IllegalStateException("Third generation trees don't track insertion order for decay");
+			}
+			if (this.floatStorage)
+			{
+				throw new IllegalStateException("Third generation trees can't store floats");
+			}
+			this.tree = new KdTree<>(this.formula.weights.length);
+			return;
+		}
+
+		WeightedSqrEuclid<T> kdTree = new WeightedSqrEuclid<>(this.formula.weights.length,
+				this.maxDataPoints == 0 ? null : this.maxDataPoints, this.floatStorage);
+		kdTree.setWeights(this.formula.weights);
+		kdTree.setRebuildOnWeightDrift(this.rebuildOnWeightDrift);
+		kdTree.setStats(this.stats);
+		this.tree = kdTree;
+	}
+
+	/**
+	 * Start counting inserts, evictions and search work. Third generation
+	 * trees only report inserts.
+	 */
+	void statsOn()
+	{
+		if (this.stats == null)
+		{
+			this.stats = new IndexStats();
+			if (this.tree instanceof WeightedSqrEuclid)
+			{
+				((WeightedSqrEuclid<T>) this.tree).setStats(this.stats);
+			}
+		}
+	}
+
+	IndexStats getStats()
+	{
+		return this.stats;
+	}
+
+	void addView()
+	{
+		this.views++;
+	}
+
+	boolean isShared()
+	{
+		return this.views > 1;
+	}
+
+	/**
+	 * Make sure a single search can answer a view that asks for up to 'k'
+	 * neighbors
+	 */
+	void includeK(int k)
+	{
+		this.maxK = Math.max(this.maxK, k);
+	}
+
+	/**
+	 * Make sure neighbors come back with the insertion sequence numbers that
+	 * decay is ranked by
+	 */
+	void requireSequences()
+	{
+		if (this.indexType != IndexType.KD_TREE)
+		{
+			throw new IllegalStateException("Decay needs an index that tracks insertion order");
+		}
+		this.needsSequences = true;
+	}
+
+	/**
+	 * Choose the nearest neighbor index behind this store. Only valid before
+	 * any data is logged.
+	 */
+	void setIndexType(IndexType indexType)
+	{
+		if (this.size() > 0)
+		{
+			throw new IllegalStateException("Can't change the index of a store that already has data");
+		}
+		this.indexType = indexType;
+		this.initTree();
+	}
+
+	/**
+	 * Search the tree approximately: skip nodes that can't beat the current
+	 * k-th nearest by more than a factor of (1 + 'epsilon'), and scan at most
+	 * 'maxLeaves' leaves. Every 'recallSampleInterval'-th search is checked
+	 * against an exact search (0 to never check). Windows are always exact.
+	 */
+	void setApproximate(double epsilon, int maxLeaves, int recallSampleInterval)
+	{
+		this.approxEpsilon = epsilon;
+		this.approxMaxLeaves = maxLeaves;
+		this.recallSampleInterval = recallSampleInterval;
+		this.queryCache.clear();
+		this.version++;
+	}
+
+	boolean isApproximate()
+	{
+		return this.approxMaxLeaves > 0;
+	}
+
+	/**
+	 * The mean fraction of the exact nearest neighbors found by the sampled
+	 * approximate searches, or NaN before any were sampled
+	 */
+	public double getRecall()
+	{
+		return (this.recallSamples == 0) ? Double.NaN : this.recallTotal / this.recallSamples;
+	}
+
+	public int getRecallSamples()
+	{
+		return this.recallSamples;
+	}
+
+	/**
+	 * Store the tree's coordinates as floats, halving their memory. Points
+	 * are rounded to float precision, which is far finer than the formulas'
+	 * attributes need. Only valid before any data is logged.
+	 */
+	void setFloatStorage(boolean floatStorage)
+	{
+		if (this.size() > 0)
+		{
+			throw new IllegalStateException("Can't change the storage of a store that already has data");
+		}
+		this.floatStorage = floatStorage;
+		this.initTree();
+	}
+
+	/**
+	 * Rebuild the tree under a search's own weights once they drift far from
+	 * the weights its splits were chosen under. Third generation trees ignore
+	 * this.
+	 */
+	void setRebuildOnWeightDrift(boolean rebuildOnWeightDrift)
+	{
+		this.rebuildOnWeightDrift = rebuildOnWeightDrift;
+		if (this.tree instanceof WeightedSqrEuclid)
+		{
+			((WeightedSqrEuclid<T>) this.tree).setRebuildOnWeightDrift(rebuildOnWeightDrift);
+		}
+	}
+
+	/**
+	 * Limit the tree to the most recent 'maxDataPoints' points. Only valid
+	 * for a store with a single view.
+	 */
+	void setMaxDataPoints(int maxDataPoints)
+	{
+		if (this.size() > 0)
+		{
+			throw new IllegalStateException("Can't limit a store that already has data");
+		}
+		this.maxDataPoints = maxDataPoints;
+		this.initTree();
+	}
+
+	/**
+	 * Keep at least the last 'windowSize' points in the recent window
+	 */
+	void includeWindow(int windowSize)
+	{
+		if (windowSize > this.windowValues.length)
+		{
+			if (this.size() > 0)
+			{
+				throw new IllegalStateException("Can't grow the window of a store that already has data");
+			}
+			this.windowPoints = new double[windowSize * this.formula.weights.length];
+			this.windowValues = new Object[windowSize];
+			this.windowSequences = new long[windowSize];
+		}
+	}
+
+	public DistanceFormula getFormula()
+	{
+		return this.formula;
+	}
+
+	public IndexType getIndexType()
+	{
+		return this.indexType;
+	}
+
+	public int size()
+	{
+		return this.tree.size();
+	}
+
+	long getVersion()
+	{
+		return this.version;
+	}
+
+	public void logWave(Wave w, T value)
+	{
+		this.logDataPoint(this.formula.dataPoint(w), value);
+	}
+
+	void logDataPoint(double[] dataPoint, T value)
+	{
+		this.tree.addPoint(dataPoint, value);
+		if (this.stats != null)
+		{
+			this.stats.addInsert();
+		}
+
+		int capacity = this.windowValues.length;
+		if (capacity > 0)
+		{
+			int index = (this.windowStart + this.windowCount) % capacity;
+			if (this.windowCount == capacity)
+			{
+				this.windowStart = (this.windowStart + 1) % capacity;
+			}
+			else
+			{
+				this.windowCount++;
+			}
+			System.arraycopy(dataPoint, 0, this.windowPoints, index * dataPoint.length, dataPoint.length);
+			this.windowValues[index] = value;
+			this.windowSequences[index] = this.nextSequence;
+		}
+		this.nextSequence++;
+		this.queryCache.clear();
+		this.version++;
+	}
+
+	void setWeights(double[] weights)
+	{
+		this.formula.weights = weights;
+		if (this.tree instanceof WeightedSqrEuclid)
+		{
+			((WeightedSqrEuclid<T>) this.tree).setWeights(weights);
+		}
+		this.queryCache.clear();
+		this.version++;
+	}
+
+	/**
+	 * The 'k' nearest neighbors over all data in the store
+	 */
+	List<Entry<T>> nearestNeighbors(double[] dataPoint, int k)
+	{
+		if (!this.isShared())
+		{
+			return this.search(dataPoint, k, this.formula.weights, false);
+		}
+
+		return this.cachedQuery(dataPoint, k).slice(k);
+	}
+
+	/**
+	 * Writes the 'k' nearest neighbors over all data in the store into
+	 * 'results'. A shared store copies them out of its query cache, without
+	 * making any Entry objects.
+	 */
+	void nearestNeighbors(double[] dataPoint, int k, ResultHeap results)
+	{
+		if (!this.isShared())
+		{
+			this.searchTree(dataPoint, k, this.formula.weights, results);
+			return;
+		}
+
+		this.cachedQuery(dataPoint, k).copyTo(k, results);
+	}
+
+	/**
+	 * The cached query answering 'k' neighbors of 'dataPoint', searching for
+	 * as many as any view of the store asks for and caching them first if
+	 * need be
+	 */
+	private CachedQuery<T> cachedQuery(double[] dataPoint, int k)
+	{
+		CachedQuery<T> cached = this.findCachedQuery(dataPoint, k);
+		if (cached == null)
+		{
+			int searchK = Math.max(k, this.maxK);
+			this.searchTree(dataPoint, searchK, this.formula.weights, this.queryResults);
+			cached = new CachedQuery<>(searchK, this.queryResults);
+			this.queryCache.put(new QueryPoint(dataPoint), cached);
+		}
+		return cached;
+	}
+
+	/**
+	 * Writes the 'k' nearest neighbors over all data in the store, measured
+	 * with the given weights, into 'results'
+	 */
+	void nearestNeighbors(double[] dataPoint, int k, double[] weights, ResultHeap results)
+	{
+		this.searchTree(dataPoint, k, weights, results);
+	}
+
+	/**
+	 * The 'k' nearest neighbors over all data in the store, measured with the
+	 * given weights instead of the formula's. These aren't cached.
+	 */
+	List<Entry<T>> nearestNeighbors(double[] dataPoint, int k, double[] weights)
+	{
+		return this.search(dataPoint, k, weights, false);
+	}
+
+	/**
+	 * Iterates over all data in the store nearest first, searching the tree
+	 * only as far as the caller reads
+	 */
+	Iterator<Entry<T>> neighborIterator(double[] dataPoint)
+	{
+		return this.tree.nearestNeighborIterator(dataPoint, this.formula.weights);
+	}
+
+	/**
+	 * Iterates over the last 'windowSize' points logged, nearest first. The
+	 * window has no tree to expand lazily, so it's scanned and sorted up front.
+	 */
+	Iterator<Entry<T>> recentNeighborIterator(double[] dataPoint, int windowSize)
+	{
+		int numPoints = Math.min(windowSize, this.windowCount);
+		ResultHeap resultHeap = new ResultHeap(Math.max(1, numPoints));
+		this.nearestRecentNeighbors(dataPoint, numPoints, windowSize, this.formula.weights, resultHeap);
+		return this.sortedNeighbors(this.neighborList(resultHeap, true)).iterator();
+	}
+
+	private List<Entry<T>> search(double[] dataPoint, int k, double[] weights, boolean sequentialSorting)
+	{
+		ResultHeap resultHeap = new ResultHeap(k);
+		this.searchTree(dataPoint, k, weights, resultHeap);
+		return this.neighborList(resultHeap, sequentialSorting);
+	}
+
+	private void searchTree(double[] dataPoint, int k, double[] weights, ResultHeap results)
+	{
+		if (!this.isApproximate())
+		{
+			this.tree.nearestNeighbor(dataPoint, k, weights, results);
+			return;
+		}
+
+		this.tree.nearestNeighborApprox(dataPoint, k, weights, results, this.approxEpsilon, this.approxMaxLeaves);
+		this.approxSearches++;
+		if (this.recallSampleInterval > 0 && this.approxSearches % this.recallSampleInterval == 0)
+		{
+			this.sampleRecall(dataPoint, k, weights, results);
+		}
+	}
+
+	/**
+	 * Compare an approximate search's results to an exact search. Neighbors
+	 * no farther than the exact k-th nearest count as found, so ties don't
+	 * count against recall.
+	 */
+	private void sampleRecall(double[] dataPoint, int k, double[] weights, ResultHeap approxResults)
+	{
+		this.tree.nearestNeighbor(dataPoint, k, weights, this.exactResults);
+		int exactCount = this.exactResults.getValues();
+		if (exactCount == 0)
+		{
+			return;
+		}
+
+		double kthDistance = 0;
+		for (int x = 0; x < exactCount; x++)
+		{
+			kthDistance = Math.max(kthDistance, this.exactResults.getDistance()[x]);
+		}
+		int found = 0;
+		for (int x = 0; x < approxResults.getValues(); x++)
+		{
+			if (approxResults.getDistance()[x] <= kthDistance)
+			{
+				found++;
+			}
+		}
+		this.recallTotal += (double) found / exactCount;
+		this.recallSamples++;
+	}
+
+	/**
+	 * The 'k' nearest neighbors to each data point over all data in the store,
+	 * searching the tree once for all of them
+	 */
+	List<List<Entry<T>>> nearestNeighbors(List<double[]> dataPoints, int k)
+	{
+		if (!this.isShared())
+		{
+			return this.searchBatch(dataPoints, k);
+		}
+
+		// Look everything up before searching, since caching the searched
+		// points may push out ones found here
+		List<CachedQuery<T>> cachedQueries = new ArrayList<>(dataPoints.size());
+		List<double[]> missingPoints = new ArrayList<>();
+		for (double[] dataPoint : dataPoints)
+		{
+			CachedQuery<T> cached = this.findCachedQuery(dataPoint, k);
+			cachedQueries.add(cached);
+			if (cached == null)
+			{
+				missingPoints.add(dataPoint);
+			}
+		}
+
+		int searchK = Math.max(k, this.maxK);
+		this.searchBatchResults(missingPoints, searchK);
+		List<List<Entry<T>>> allNeighbors = new ArrayList<>(dataPoints.size());
+		int nextSearched = 0;
+		for (int x = 0; x < dataPoints.size(); x++)
+		{
+			CachedQuery<T> cached = cachedQueries.get(x);
+			if (cached == null)
+			{
+				cached = new CachedQuery<>(searchK, this.batchResults[nextSearched++]);
+				this.queryCache.put(new QueryPoint(dataPoints.get(x)), cached);
+			}
+			allNeighbors.add(cached.slice(k));
+		}
+		return allNeighbors;
+	}
+
+	private List<List<Entry<T>>> searchBatch(List<double[]> dataPoints, int k)
+	{
+		int numPoints = dataPoints.size();
+		this.searchBatchResults(dataPoints, k);
+		List<List<Entry<T>>> allNeighbors = new ArrayList<>(numPoints);
+		for (int x = 0; x < numPoints; x++)
+		{
+			allNeighbors.add(this.neighborList(this.batchResults[x], false));
+		}
+		return allNeighbors;
+	}
+
+	/**
+	 * Writes the 'k' nearest neighbors to each data point into the matching
+	 * heap of batchResults
+	 */
+	private void searchBatchResults(List<double[]> dataPoints, int k)
+	{
+		int numPoints = dataPoints.size();
+		if (numPoints == 0)
+		{
+			return;
+		}
+
+		if (this.batchResults.length < numPoints)
+		{
+			ResultHeap[] newResults = Arrays.copyOf(this.batchResults, numPoints);
+			for (int x = this.batchResults.length; x < numPoints; x++)
+			{
+				newResults[x] = new ResultHeap(k);
+			}
+			this.batchResults = newResults;
+		}
+
+		if (this.isApproximate())
+		{
+			for (int x = 0; x < numPoints; x++)
+			{
+				this.searchTree(dataPoints.get(x), k, this.formula.weights, this.batchResults[x]);
+			}
+			return;
+		}
+
+		int[] counts = new int[numPoints];
+		Arrays.fill(counts, k);
+		this.tree.nearestNeighborBatch(dataPoints.toArray(new double[numPoints][]), counts, this.batchResults,
+				this.formula.weights);
+	}
+
+	/**
+	 * Copies a search's results out of 'resultHeap', farthest first if
+	 * 'sequentialSorting' is set. Sorting empties the heap.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Entry<T>> neighborList(ResultHeap resultHeap, boolean sequentialSorting)
+	{
+		List<Entry<T>> neighbors = new ArrayList<>(resultHeap.getValues());
+		if (sequentialSorting)
+		{
+			while (resultHeap.getValues() > 0)
+			{
+				resultHeap.removeLargest();
+				neighbors.add(new Entry<>(resultHeap.getRemovedDist(), (T) resultHeap.getRemovedData(),
+						resultHeap.getRemovedSequence()));
+			}
+		}
+		else
+		{
+			for (int x = 0; x < resultHeap.getValues(); x++)
+			{
+				neighbors.add(new Entry<>(resultHeap.getDistance()[x], (T) resultHeap.getData()[x],
+						resultHeap.getSequence()[x]));
+			}
+		}
+		return neighbors;
+	}
+
+	/**
+	 * The 'k' nearest neighbors among the last 'windowSize' points logged,
+	 * found by scanning the recent window
+	 */
+	List<Entry<T>> nearestRecentNeighbors(double[] dataPoint, int k, int windowSize)
+	{
+		return this.nearestRecentNeighbors(dataPoint, k, windowSize, this.formula.weights);
+	}
+
+	/**
+	 * The 'k' nearest neighbors among the last 'windowSize' points logged,
+	 * measured with the given weights
+	 */
+	List<Entry<T>> nearestRecentNeighbors(double[] dataPoint, int k, int windowSize, double[] weights)
+	{
+		ResultHeap resultHeap = new ResultHeap(k);
+		this.nearestRecentNeighbors(dataPoint, k, windowSize, weights, resultHeap);
+		return this.neighborList(resultHeap, false);
+	}
+
+	/**
+	 * Writes the 'k' nearest neighbors among the last 'windowSize' points
+	 * logged, measured with the given weights, into 'results'
+	 */
+	void nearestRecentNeighbors(double[] dataPoint, int k, int windowSize, double[] weights, ResultHeap results)
+	{
+		int capacity = this.windowValues.length;
+		int numPoints = Math.min(windowSize, this.windowCount);
+		results.reset(k);
+		for (int x = this.windowCount - numPoints; x < this.windowCount; x++)
+		{
+			int index = (this.windowStart + x) % capacity;
+			results.addValue(this.distance(index * dataPoint.length, dataPoint, weights), this.windowValues[index],
+					this.windowSequences[index]);
+		}
+		if (this.stats != null)
+		{
+			this.stats.addSearches(1, 0, 0, numPoints);
+		}
+	}
+
+	/**
+	 * Weighted squared Euclidean distance, matching WeightedSqrEuclid
+	 */
+	private double distance(int offset, double[] dataPoint, double[] weights)
+	{
+		double d = 0;
+		for (int x = 0; x < dataPoint.length; x++)
+		{
+			double diff = (this.windowPoints[offset + x] - dataPoint[x]) * weights[x];
+			if (!Double.isNaN(diff))
+			{
+				d += diff * diff;
+			}
+		}
+		return d;
+	}
+
+	/**
+	 * Neighbors come back from the tree farthest first; flip them so any
+	 * prefix is the closest neighbors
+	 */
+	private List<Entry<T>> sortedNeighbors(List<Entry<T>> farthestFirst)
+	{
+		Collections.reverse(farthestFirst);
+		return farthestFirst;
+	}
+
+	private CachedQuery<T> findCachedQuery(double[] dataPoint, int k)
+	{
+		CachedQuery<T> cached = this.queryCache.get(new QueryPoint(dataPoint));
+		return (cached != null && cached.covers(k)) ? cached : null;
+	}
+
+	/**
+	 * A query cache key: the query point, compared by value
+	 */
+	private static final class QueryPoint
+	{
+		private final double[] dataPoint;
+		private final int hash;
+
+		QueryPoint(double[] dataPoint)
+		{
+			this.dataPoint = dataPoint;
+			this.hash = Arrays.hashCode(dataPoint);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			return (o instanceof QueryPoint) && Arrays.equals(this.dataPoint, ((QueryPoint) o).dataPoint);
+		}
+	}
+
+	/**
+	 * Cached queries in least recently used order, dropping the least recently
+	 * used once there are more than KnnView.MAX_CACHED_QUERIES
+	 */
+	private static class QueryCache<T> extends LinkedHashMap<QueryPoint, CachedQuery<T>>
+	{
+		private static final long serialVersionUID = 6320184137524098113L;
+
+		QueryCache()
+		{
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<QueryPoint, CachedQuery<T>> eldest)
+		{
+			return this.size() > KnnView.MAX_CACHED_QUERIES;
+		}
+	}
+
+	/**
+	 * A query's neighbors, nearest first
+	 */
+	private static class CachedQuery<T>
+	{
+		private double[] distances;
+		private Object[] values;
+		private long[] sequences;
+		private int searchedK;
+
+		/**
+		 * Takes the neighbors out of 'results', which is left empty
+		 */
+		CachedQuery(int searchedK, ResultHeap results)
+		{
+			this.searchedK = searchedK;
+			int count = results.getValues();
+			this.distances = new double[count];
+			this.values = new Object[count];
+			this.sequences = new long[count];
+			for (int x = count - 1; x >= 0; x--)
+			{
+				results.removeLargest();
+				this.distances[x] = results.getRemovedDist();
+				this.values[x] = results.getRemovedData();
+				this.sequences[x] = results.getRemovedSequence();
+			}
+		}
+
+		boolean covers(int k)
+		{
+			return k <= this.searchedK;
+		}
+
+		@SuppressWarnings("unchecked")
+		List<Entry<T>> slice(int k)
+		{
+			int count = Math.min(k, this.values.length);
+			List<Entry<T>> neighbors = new ArrayList<>(count);
+			for (int x = 0; x < count; x++)
+			{
+				neighbors.add(new Entry<>(this.distances[x], (T) this.values[x], this.sequences[x]));
+			}
+			return neighbors;
+		}
+
+		/**
+		 * Writes the nearest 'k' into 'results', resetting it first. Adding
+		 * them farthest first keeps them in heap order without any swaps.
+		 */
+		void copyTo(int k, ResultHeap results)
+		{
+			results.reset(k);
+			for (int x = Math.min(k, this.values.length) - 1; x >= 0; x--)
+			{
+				results.addValue(this.distances[x], this.values[x], this.sequences[x]);
+			}
+		}
+	}
+}
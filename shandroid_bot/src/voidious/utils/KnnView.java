@@ -1,10 +1,12 @@
 package voidious.utils;
 
 import ags.utils.dataStructures.Entry;
-import ags.utils.dataStructures.WeightedSqrEuclid;
+import ags.utils.dataStructures.ResultHeap;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -33,7 +35,8 @@ public class KnnView<T>
 	private static int NAME_INDEX = 0;
 
 	public double weight;
-	private DistanceFormula formula;
+	private KnnStore<T> store;
+	private boolean ownsStore;
 	private int kSize;
 	public int kDivisor;
 	private int maxDataPoints;
@@ -45,14 +48,75 @@ public class KnnView<T>
 	private double paddedHitThreshold;
 	private double decayRate;
 	public String name;
-	private WeightedSqrEuclid<T> tree;
-	public Map<Integer, List<Entry<T>>> cachedNeighbors;
+	// Neighbors found for recent queries, keyed by query point and k. They're
+	// dropped once the store's version moves past cacheVersion.
+	private Map<NeighborQuery, List<Entry<T>>> neighborCache;
+	private long cacheVersion;
+	private long cacheHits;
+	private long cacheMisses;
+	// Null unless KnnMetrics are enabled
+	private KnnMetrics metrics;
+	private int[] decayOrder;
+	private long[] entrySequences;
+	private long[] decaySequences;
+	private double[] decayPowers;
 
 	private static final double NO_DECAY = 0;
+	static final int MAX_CACHED_QUERIES = 64;
 
+	/**
+	 * A cache key: the query point, compared by value, and k
+	 */
+	private static final class NeighborQuery
+	{
+		private final double[] dataPoint;
+		private final int k;
+		private final int hash;
+
+		NeighborQuery(double[] dataPoint, int k)
+		{
+			this.dataPoint = dataPoint;
+			this.k = k;
+			this.hash = 31 * Arrays.hashCode(dataPoint) + k;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof NeighborQuery))
+			{
+				return false;
+			}
+			NeighborQuery that = (NeighborQuery) o;
+			return this.k == that.k && Arrays.equals(this.dataPoint, that.dataPoint);
+		}
+	}
+
+	/**
+	 * A view with its own private store of data points
+	 */
 	public KnnView(DistanceFormula formula)
 	{
-		this.formula = formula;
+		this(new KnnStore<>(formula));
+		this.ownsStore = true;
+	}
+
+	/**
+	 * A view onto a store that other views may share. Points logged to the
+	 * store are seen by all of its views; setMaxDataPoints makes this view
+	 * look at only the most recent points instead of limiting the store.
+	 */
+	public KnnView(KnnStore<T> store)
+	{
+		this.store = store;
+		this.ownsStore = false;
+		this.store.addView();
 		this.weight = 1;
 		this.kSize = 1;
 		this.kDivisor = 1;
@@ -65,14 +129,19 @@ public class KnnView<T>
 		this.maxDataPoints = 0;
 		this.decayRate = NO_DECAY;
 		this.name = (new Long(Math.round(Math.random() * 10000000))).toString() + "-" + NAME_INDEX++;
-		this.initTree();
-		this.cachedNeighbors = new HashMap<>();
-	}
-
-	private void initTree()
-	{
-		this.tree = new WeightedSqrEuclid<>(this.formula.weights.length, this.maxDataPoints == 0 ? null : this.maxDataPoints);
-		this.tree.setWeights(this.formula.weights);
+		this.neighborCache = new HashMap<>();
+		this.cacheVersion = store.getVersion();
+		this.cacheHits = 0;
+		this.cacheMisses = 0;
+		if (KnnMetrics.enabled)
+		{
+			this.metrics = new KnnMetrics();
+			this.store.statsOn();
+		}
+		this.decayOrder = new int[0];
+		this.entrySequences = new long[0];
+		this.decaySequences = new long[0];
+		this.decayPowers = new double[0];
 	}
 
 	public KnnView<T> setWeight(double weight)
@@ -84,6 +153,7 @@ public class KnnView<T>
 	public KnnView<T> setK(int kSize)
 	{
 		this.kSize = kSize;
+		this.store.includeK(kSize);
 		return this;
 	}
 
@@ -132,13 +202,70 @@ public class KnnView<T>
 	public KnnView<T> setMaxDataPoints(int maxDataPoints)
 	{
 		this.maxDataPoints = maxDataPoints;
-		this.initTree();
+		this.clearCache();
+		if (this.ownsStore)
+		{
+			this.store.setMaxDataPoints(maxDataPoints);
+		}
+		else
+		{
+			this.store.includeWindow(maxDataPoints);
+		}
+		return this;
+	}
+
+	/**
+	 * Choose the nearest neighbor index behind this view's store. On a shared
+	 * store this applies to every view of it.
+	 */
+	public KnnView<T> setIndexType(KnnStore.IndexType indexType)
+	{
+		this.store.setIndexType(indexType);
+		return this;
+	}
+
+	/**
+	 * Store this view's points as floats. On a shared store this applies to
+	 * every view of it.
+	 */
+	public KnnView<T> floatStorageOn()
+	{
+		this.store.setFloatStorage(true);
+		return this;
+	}
+
+	/**
+	 * Rebuild this view's tree when searches with their own weights drift far
+	 * from the weights its splits were chosen under. Worth it only when the
+	 * weights settle, as each rebuild costs a full reinsert during a search.
+	 * On a shared store this applies to every view of it.
+	 */
+	public KnnView<T> weightDriftRebuildOn()
+	{
+		this.store.setRebuildOnWeightDrift(true);
+		return this;
+	}
+
+	/**
+	 * Search approximately, scanning at most 'maxLeaves' leaves and skipping
+	 * nodes that can't beat the current k-th nearest by a factor of (1 +
+	 * 'epsilon'). Every 'recallSampleInterval'-th search is also run exactly
+	 * to measure recall. On a shared store this applies to every view of it.
+	 */
+	public KnnView<T> setApproximate(double epsilon, int maxLeaves, int recallSampleInterval)
+	{
+		this.store.setApproximate(epsilon, maxLeaves, recallSampleInterval);
 		return this;
 	}
 
 	public KnnView<T> setDecayRate(double decayRate)
 	{
 		this.decayRate = decayRate;
+		this.decayPowers = new double[0];
+		if (decayRate != NO_DECAY)
+		{
+			this.store.requireSequences();
+		}
 		return this;
 	}
 
@@ -150,19 +277,94 @@ public class KnnView<T>
 
 	public double[] logWave(Wave w, T value)
 	{
-		double[] dataPoint = this.formula.dataPointFromWave(w);
-		return this.logDataPoint(dataPoint, value);
+		double[] dataPoint = this.store.getFormula().dataPoint(w);
+		this.store.logDataPoint(dataPoint, value);
+		return dataPoint;
 	}
 
-	private double[] logDataPoint(double[] dataPoint, T value)
+	public KnnStore<T> getStore()
 	{
-		this.tree.addPoint(dataPoint, value);
-		return dataPoint;
+		return this.store;
 	}
 
+	private boolean isWindow()
+	{
+		return !this.ownsStore && this.maxDataPoints > 0;
+	}
+
+	/**
+	 * Drops all cached neighbors. Logging to the store or changing its
+	 * distance measure already does this, so callers shouldn't need to.
+	 */
 	public void clearCache()
 	{
-		this.cachedNeighbors.clear();
+		this.neighborCache.clear();
+	}
+
+	public long getCacheHits()
+	{
+		return this.cacheHits;
+	}
+
+	public long getCacheMisses()
+	{
+		return this.cacheMisses;
+	}
+
+	/**
+	 * @return this view's query metrics, or null if metrics are off
+	 */
+	public KnnMetrics getMetrics()
+	{
+		return this.metrics;
+	}
+
+	private void startQuery()
+	{
+		if (this.metrics != null)
+		{
+			this.metrics.startQuery(this.store.getStats());
+		}
+	}
+
+	private void endQuery(int queries)
+	{
+		if (this.metrics != null)
+		{
+			this.metrics.endQuery(this.store.getStats(), queries);
+		}
+	}
+
+	/**
+	 * The cached neighbors for 'query', or null, first dropping the cache if
+	 * the store has changed since it was filled
+	 */
+	private List<Entry<T>> cachedNeighbors(NeighborQuery query)
+	{
+		if (this.cacheVersion != this.store.getVersion())
+		{
+			this.neighborCache.clear();
+			this.cacheVersion = this.store.getVersion();
+		}
+		List<Entry<T>> neighbors = this.neighborCache.get(query);
+		if (neighbors == null)
+		{
+			this.cacheMisses++;
+		}
+		else
+		{
+			this.cacheHits++;
+		}
+		return neighbors;
+	}
+
+	private void cacheNeighbors(NeighborQuery query, List<Entry<T>> neighbors)
+	{
+		if (this.neighborCache.size() >= MAX_CACHED_QUERIES)
+		{
+			this.neighborCache.clear();
+		}
+		this.neighborCache.put(query, neighbors);
 	}
 
 	public boolean enabled(double hitPercentage, double marginOfError)
@@ -172,7 +374,11 @@ public class KnnView<T>
 
 	public int size()
 	{
-		return this.tree.size();
+		if (this.isWindow())
+		{
+			return Math.min(this.store.size(), this.maxDataPoints);
+		}
+		return this.store.size();
 	}
 
 	public List<Entry<T>> nearestNeighbors(Wave w, boolean aiming)
@@ -180,42 +386,264 @@ public class KnnView<T>
 		return this.nearestNeighbors(w, aiming, DiaUtils.limit(1, this.size() / this.kDivisor, this.kSize));
 	}
 
+	/**
+	 * The 'k' nearest neighbors to the wave's data point. Results are cached
+	 * until the store changes, so repeating a query is free; callers mustn't
+	 * modify the returned list.
+	 */
 	public List<Entry<T>> nearestNeighbors(Wave w, boolean aiming, int k)
 	{
-		double[] wavePoint = this.formula.dataPointFromWave(w, aiming);
-		return this.tree.nearestNeighbor(wavePoint, k, false);
+		double[] wavePoint = this.store.getFormula().dataPoint(w, aiming);
+		NeighborQuery query = new NeighborQuery(wavePoint, k);
+		List<Entry<T>> neighbors = this.cachedNeighbors(query);
+		if (neighbors == null)
+		{
+			this.startQuery();
+			if (this.isWindow())
+			{
+				neighbors = this.store.nearestRecentNeighbors(wavePoint, k, this.maxDataPoints);
+			}
+			else
+			{
+				neighbors = this.store.nearestNeighbors(wavePoint, k);
+			}
+			this.endQuery(1);
+			this.cacheNeighbors(query, neighbors);
+		}
+		return neighbors;
 	}
 
-	public void setWeights(double[] weights)
+	/**
+	 * Writes the nearest neighbors into 'results' rather than allocating a
+	 * list. Read them back with getValues(), getDistance(), getData() and
+	 * getSequence(). Neighbors this view already has cached as a list are
+	 * copied from it; otherwise the store answers from its own query cache.
+	 */
+	public void nearestNeighbors(Wave w, boolean aiming, ResultHeap results)
 	{
-		this.formula.weights = weights;
-		this.tree.setWeights(weights);
+		int k = DiaUtils.limit(1, this.size() / this.kDivisor, this.kSize);
+		double[] wavePoint = this.store.getFormula().dataPoint(w, aiming);
+		List<Entry<T>> neighbors = this.cachedNeighbors(new NeighborQuery(wavePoint, k));
+		if (neighbors != null)
+		{
+			results.reset(k);
+			for (int x = 0; x < neighbors.size(); x++)
+			{
+				Entry<T> neighbor = neighbors.get(x);
+				results.addValue(neighbor.getDistance(), neighbor.getValue(), neighbor.getSequence());
+			}
+			return;
+		}
+
+		this.startQuery();
+		if (this.isWindow())
+		{
+			this.store.nearestRecentNeighbors(wavePoint, k, this.maxDataPoints, this.store.getFormula().weights, results);
+		}
+		else
+		{
+			this.store.nearestNeighbors(wavePoint, k, results);
+		}
+		this.endQuery(1);
 	}
 
-	public Map<Timestamped, Double> getDecayWeights(List<? extends Entry<? extends Timestamped>> timestampedEntries)
+	/**
+	 * Writes the nearest neighbors, measured with the given weights, into
+	 * 'results' rather than allocating a list
+	 */
+	public void nearestNeighbors(Wave w, boolean aiming, double[] weights, ResultHeap results)
 	{
-		Map<Timestamped, Double> weightMap = new HashMap<>();
-		int numScans = timestampedEntries.size();
-		if (this.decayRate == KnnView.NO_DECAY)
+		int k = DiaUtils.limit(1, this.size() / this.kDivisor, this.kSize);
+		double[] wavePoint = this.store.getFormula().dataPoint(w, aiming);
+		this.startQuery();
+		if (this.isWindow())
+		{
+			this.store.nearestRecentNeighbors(wavePoint, k, this.maxDataPoints, weights, results);
+		}
+		else
+		{
+			this.store.nearestNeighbors(wavePoint, k, weights, results);
+		}
+		this.endQuery(1);
+	}
+
+	/**
+	 * Finds the nearest neighbors measuring distance with the given weights
+	 * instead of the formula's, without reconfiguring the view
+	 */
+	public List<Entry<T>> nearestNeighbors(Wave w, boolean aiming, double[] weights)
+	{
+		int k = DiaUtils.limit(1, this.size() / this.kDivisor, this.kSize);
+		double[] wavePoint = this.store.getFormula().dataPoint(w, aiming);
+		List<Entry<T>> neighbors;
+		this.startQuery();
+		if (this.isWindow())
+		{
+			neighbors = this.store.nearestRecentNeighbors(wavePoint, k, this.maxDataPoints, weights);
+		}
+		else
+		{
+			neighbors = this.store.nearestNeighbors(wavePoint, k, weights);
+		}
+		this.endQuery(1);
+		return neighbors;
+	}
+
+	/**
+	 * Iterates over the neighbors nearest first, so a caller can stop once it
+	 * has enough of them instead of fixing k up front
+	 */
+	public Iterator<Entry<T>> neighborIterator(Wave w, boolean aiming)
+	{
+		double[] wavePoint = this.store.getFormula().dataPoint(w, aiming);
+		if (this.isWindow())
+		{
+			return this.store.recentNeighborIterator(wavePoint, this.maxDataPoints);
+		}
+		return this.store.neighborIterator(wavePoint);
+	}
+
+	/**
+	 * Finds the nearest neighbors for several waves, searching the tree once
+	 * for all of those not already cached. The result at each index
+	 * corresponds to the wave at the same index.
+	 */
+	public List<List<Entry<T>>> nearestNeighbors(List<Wave> waves, boolean aiming)
+	{
+		int numWaves = waves.size();
+		if (numWaves == 0)
+		{
+			return new ArrayList<>();
+		}
+
+		int k = DiaUtils.limit(1, this.size() / this.kDivisor, this.kSize);
+		List<List<Entry<T>>> allNeighbors = new ArrayList<>(numWaves);
+		if (this.isWindow())
 		{
-			for (Entry<? extends Timestamped> entry : timestampedEntries)
+			for (Wave w : waves)
 			{
-				weightMap.put(entry.getValue(), 1.0);
+				allNeighbors.add(this.nearestNeighbors(w, aiming, k));
 			}
+			return allNeighbors;
 		}
-		else
+
+		List<Integer> missingIndexes = new ArrayList<>();
+		List<double[]> missingPoints = new ArrayList<>();
+		for (int x = 0; x < numWaves; x++)
+		{
+			double[] wavePoint = this.store.getFormula().dataPoint(waves.get(x), aiming);
+			List<Entry<T>> neighbors = this.cachedNeighbors(new NeighborQuery(wavePoint, k));
+			allNeighbors.add(neighbors);
+			if (neighbors == null)
+			{
+				missingIndexes.add(x);
+				missingPoints.add(wavePoint);
+			}
+		}
+		if (!missingPoints.isEmpty())
+		{
+			this.startQuery();
+			List<List<Entry<T>>> searched = this.store.nearestNeighbors(missingPoints, k);
+			this.endQuery(missingPoints.size());
+			for (int x = 0; x < missingIndexes.size(); x++)
+			{
+				allNeighbors.set(missingIndexes.get(x), searched.get(x));
+				this.cacheNeighbors(new NeighborQuery(missingPoints.get(x), k), searched.get(x));
+			}
+		}
+		return allNeighbors;
+	}
+
+	public void setWeights(double[] weights)
+	{
+		this.store.setWeights(weights);
+	}
+
+	/**
+	 * Fills 'decayWeights' with the decay weight of each entry, in the same
+	 * order as the entries: 1 for the most recently logged, divided by the
+	 * decay rate once for each entry logged after it. Entries are ranked by
+	 * the insertion sequence numbers they came back from the store with.
+	 * Returns 'decayWeights', or a larger replacement if it was too small.
+	 */
+	public double[] getDecayWeights(List<? extends Entry<?>> entries, double[] decayWeights)
+	{
+		int numScans = entries.size();
+		if (this.entrySequences.length < numScans)
+		{
+			this.entrySequences = new long[numScans];
+		}
+		for (int x = 0; x < numScans; x++)
+		{
+			this.entrySequences[x] = entries.get(x).getSequence();
+		}
+		return this.getDecayWeights(this.entrySequences, numScans, decayWeights);
+	}
+
+	/**
+	 * Fills 'decayWeights' with the decay weight of each neighbor in
+	 * 'results', in heap order, like the list version
+	 */
+	public double[] getDecayWeights(ResultHeap results, double[] decayWeights)
+	{
+		return this.getDecayWeights(results.getSequence(), results.getValues(), decayWeights);
+	}
+
+	private double[] getDecayWeights(long[] entrySequences, int numScans, double[] decayWeights)
+	{
+		if (decayWeights.length < numScans)
 		{
-			Timestamped[] sorted = new Timestamped[numScans];
-			for (int x = 0; x < numScans; x++)
+			decayWeights = new double[numScans];
+		}
+		if (this.decayRate == KnnView.NO_DECAY)
+		{
+			Arrays.fill(decayWeights, 0, numScans, 1.0);
+			return decayWeights;
+		}
+
+		// Insertion sort of entry indexes by sequence, newest first
+		if (this.decayOrder.length < numScans)
+		{
+			this.decayOrder = new int[numScans];
+			this.decaySequences = new long[numScans];
+		}
+		int[] order = this.decayOrder;
+		long[] sequences = this.decaySequences;
+		for (int x = 0; x < numScans; x++)
+		{
+			long sequence = entrySequences[x];
+			int y = x;
+			while (y > 0 && sequences[y - 1] < sequence)
 			{
-				sorted[x] = timestampedEntries.get(x).getValue();
+				order[y] = order[y - 1];
+				sequences[y] = sequences[y - 1];
+				y--;
 			}
-			Arrays.sort(sorted);
-			for (int x = 0; x < numScans; x++)
+			order[y] = x;
+			sequences[y] = sequence;
+		}
+		double[] powers = this.decayPowers(numScans);
+		for (int x = 0; x < numScans; x++)
+		{
+			decayWeights[order[x]] = powers[x];
+		}
+		return decayWeights;
+	}
+
+	/**
+	 * 1 / decayRate^n for n = 0 .. count - 1, extending the table as needed
+	 */
+	private double[] decayPowers(int count)
+	{
+		if (this.decayPowers.length < count)
+		{
+			int oldLength = this.decayPowers.length;
+			this.decayPowers = Arrays.copyOf(this.decayPowers, count);
+			for (int x = oldLength; x < count; x++)
 			{
-				weightMap.put(sorted[x], 1.0 / DiaUtils.power(this.decayRate, numScans - x - 1));
+				this.decayPowers[x] = 1.0 / DiaUtils.power(this.decayRate, x);
 			}
 		}
-		return weightMap;
+		return this.decayPowers;
 	}
 }
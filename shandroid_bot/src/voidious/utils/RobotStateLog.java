@@ -1,9 +1,7 @@
 package voidious.utils;
 
 import java.awt.geom.Point2D;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * Copyright (c) 2012 - Voidious
@@ -27,21 +25,95 @@ import java.util.Map;
 
 public class RobotStateLog implements Cloneable
 {
-	private Map<Long, RobotState> robotStates;
+	private static final int INITIAL_TICKS = 64;
+
+	// States in a ring indexed by time. Slots from firstTime to lastTime hold
+	// the state for that tick or null, all others are null.
+	private RobotState[] robotStates;
+	private long firstTime;
+	private long lastTime;
+	private int size;
+	// Times of the states that weren't interpolated, ascending, in
+	// realTimes[realStart .. realEnd)
+	private long[] realTimes;
+	private int realStart;
+	private int realEnd;
+	private int maxTicks;
 
 	public RobotStateLog()
 	{
-		this.robotStates = new HashMap<>();
+		this(0);
+	}
+
+	/**
+	 * A log that keeps only the states from the last 'maxTicks' ticks before
+	 * the newest, or every state if 'maxTicks' is 0
+	 */
+	public RobotStateLog(int maxTicks)
+	{
+		this.maxTicks = maxTicks;
+		this.robotStates = new RobotState[INITIAL_TICKS];
+		this.realTimes = new long[INITIAL_TICKS];
+		this.size = 0;
+		this.realStart = 0;
+		this.realEnd = 0;
 	}
 
 	public void clear()
 	{
-		this.robotStates.clear();
+		Arrays.fill(this.robotStates, null);
+		this.size = 0;
+		this.realStart = 0;
+		this.realEnd = 0;
 	}
 
 	public void addState(RobotState state)
 	{
-		this.robotStates.put(state.getTime(), state);
+		long time = state.getTime();
+		if (this.size == 0)
+		{
+			this.firstTime = time;
+			this.lastTime = time;
+		}
+		else if (time > this.lastTime)
+		{
+			if (this.maxTicks > 0 && time - this.firstTime >= this.maxTicks)
+			{
+				this.removeBefore(time - this.maxTicks + 1);
+				if (this.size == 0)
+				{
+					this.addState(state);
+					return;
+				}
+			}
+			this.ensureSpan(this.firstTime, time);
+			this.lastTime = time;
+		}
+		else if (time < this.firstTime)
+		{
+			if (this.maxTicks > 0 && this.lastTime - time >= this.maxTicks)
+			{
+				return;
+			}
+			this.ensureSpan(time, this.lastTime);
+			this.firstTime = time;
+		}
+
+		int slot = this.slot(time);
+		RobotState oldState = this.robotStates[slot];
+		if (oldState == null)
+		{
+			this.size++;
+		}
+		else if (!oldState.isInterpolated())
+		{
+			this.removeRealTime(time);
+		}
+		this.robotStates[slot] = state;
+		if (!state.isInterpolated())
+		{
+			this.addRealTime(time);
+		}
 	}
 
 	public RobotState getState(long time)
@@ -51,46 +123,26 @@ public class RobotStateLog implements Cloneable
 
 	private RobotState getState(long time, boolean interpolate)
 	{
-		if (this.robotStates.containsKey(time))
+		RobotState robotState = this.storedState(time);
+		if (robotState != null)
 		{
-			RobotState robotState = this.robotStates.get(time);
 			return (interpolate || !robotState.isInterpolated()) ? robotState : null;
 		}
 		else if (interpolate)
 		{
-			RobotState beforeState = null;
-			RobotState afterState = null;
-			for (RobotState state : this.robotStates.values())
-			{
-				if (!state.isInterpolated())
-				{
-					if (state.getTime() < time)
-					{
-						if (beforeState == null || state.getTime() > beforeState.getTime())
-						{
-							beforeState = state;
-						}
-					}
-					if (state.getTime() > time)
-					{
-						if (afterState == null || state.getTime() < afterState.getTime())
-						{
-							afterState = state;
-						}
-					}
-				}
-			}
-
-			if (beforeState == null || afterState == null)
+			int after = this.firstRealTimeAfter(time);
+			if (after == this.realStart || after == this.realEnd)
 			{
 				return null;
 			}
+			RobotState beforeState = this.storedState(this.realTimes[after - 1]);
+			RobotState afterState = this.storedState(this.realTimes[after]);
 
 			Interpolator interpolator = new Interpolator(time, beforeState.getTime(), afterState.getTime());
 			RobotState interpolatedRobotState = new RobotState(interpolator.getLocation(beforeState.getLocation(),
 					afterState.getLocation()), interpolator.getHeading(beforeState.getHeading(), afterState.getHeading()),
 					interpolator.avg(beforeState.getVelocity(), afterState.getVelocity()), time, true);
-			this.robotStates.put(time, interpolatedRobotState);
+			this.addState(interpolatedRobotState);
 			return interpolatedRobotState;
 		}
 		else
@@ -108,27 +160,150 @@ public class RobotStateLog implements Cloneable
 
 	private RobotState getOldestState()
 	{
-		return this.robotStates.get(Collections.min(this.robotStates.keySet()));
+		return this.storedState(this.firstTime);
 	}
 
+	/**
+	 * Calls 'listener' with each state, oldest first
+	 */
 	public void forAllStates(AllStateListener listener)
 	{
-		this.robotStates.values().forEach(listener::onRobotState);
+		if (this.size > 0)
+		{
+			for (long time = this.firstTime; time <= this.lastTime; time++)
+			{
+				RobotState state = this.robotStates[this.slot(time)];
+				if (state != null)
+				{
+					listener.onRobotState(state);
+				}
+			}
+		}
 	}
 
 	public int size()
 	{
-		return this.robotStates.size();
+		return this.size;
 	}
 
-	@Override
-	public Object clone()
+	private RobotState storedState(long time)
+	{
+		return (this.size == 0 || time < this.firstTime || time > this.lastTime) ? null : this.robotStates[this.slot(time)];
+	}
+
+	private int slot(long time)
+	{
+		return (int) (time & (this.robotStates.length - 1));
+	}
+
+	/**
+	 * Grows the ring, if needed, so it can hold every tick from 'fromTime' to
+	 * 'toTime'
+	 */
+	private void ensureSpan(long fromTime, long toTime)
+	{
+		int length = this.robotStates.length;
+		if (toTime - fromTime < length)
+		{
+			return;
+		}
+		while (toTime - fromTime >= length)
+		{
+			length *= 2;
+		}
+		RobotState[] oldStates = this.robotStates;
+		this.robotStates = new RobotState[length];
+		for (long time = this.firstTime; time <= this.lastTime; time++)
+		{
+			this.robotStates[this.slot(time)] = oldStates[(int) (time & (oldStates.length - 1))];
+		}
+	}
+
+	/**
+	 * Drops all states from before 'time'
+	 */
+	private void removeBefore(long time)
+	{
+		for (; this.firstTime < time && this.firstTime <= this.lastTime; this.firstTime++)
+		{
+			int slot = this.slot(this.firstTime);
+			if (this.robotStates[slot] != null)
+			{
+				this.robotStates[slot] = null;
+				this.size--;
+			}
+		}
+		while (this.realStart < this.realEnd && this.realTimes[this.realStart] < time)
+		{
+			this.realStart++;
+		}
+		while (this.size > 0 && this.robotStates[this.slot(this.firstTime)] == null)
+		{
+			this.firstTime++;
+		}
+	}
+
+	/**
+	 * The index in realTimes of the first time after 'time', or realEnd if
+	 * there isn't one
+	 */
+	private int firstRealTimeAfter(long time)
+	{
+		int low = this.realStart;
+		int high = this.realEnd;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (this.realTimes[mid] <= time)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private void addRealTime(long time)
 	{
-		RobotStateLog newLog = new RobotStateLog();
-		for (Long time : this.robotStates.keySet())
+		if (this.realEnd == this.realTimes.length)
 		{
-			newLog.addState(this.robotStates.get(time));
+			int count = this.realEnd - this.realStart;
+			long[] newTimes = (count * 2 > this.realTimes.length) ? new long[this.realTimes.length * 2] : this.realTimes;
+			System.arraycopy(this.realTimes, this.realStart, newTimes, 0, count);
+			this.realTimes = newTimes;
+			this.realStart = 0;
+			this.realEnd = count;
 		}
+
+		// States almost always arrive in order, so skip the search for those
+		int index = (this.realEnd == this.realStart || time > this.realTimes[this.realEnd - 1]) ? this.realEnd
+				: this.firstRealTimeAfter(time);
+		System.arraycopy(this.realTimes, index, this.realTimes, index + 1, this.realEnd - index);
+		this.realTimes[index] = time;
+		this.realEnd++;
+	}
+
+	private void removeRealTime(long time)
+	{
+		int index = this.firstRealTimeAfter(time) - 1;
+		System.arraycopy(this.realTimes, index + 1, this.realTimes, index, this.realEnd - index - 1);
+		this.realEnd--;
+	}
+
+	@Override
+	public Object clone()
+	{
+		RobotStateLog newLog = new RobotStateLog(this.maxTicks);
+		newLog.robotStates = this.robotStates.clone();
+		newLog.firstTime = this.firstTime;
+		newLog.lastTime = this.lastTime;
+		newLog.size = this.size;
+		newLog.realTimes = this.realTimes.clone();
+		newLog.realStart = this.realStart;
+		newLog.realEnd = this.realEnd;
 		return newLog;
 	}
 
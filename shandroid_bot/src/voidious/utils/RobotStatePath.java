@@ -0,0 +1,70 @@
+package voidious.utils;
+
+/**
+ * Copyright (c) 2026 - Shandroid contributors
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ * 1. The origin of this software must not be misrepresented; you must not claim
+ * that you wrote the original software.
+ * 
+ * 2. Altered source versions must be plainly marked as such, and must not be
+ * misrepresented as being the original software.
+ * 
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+/**
+ * An immutable chain of predicted robot states, newest first. Adding a state
+ * returns a new path that shares every state of the old one, so a search can
+ * branch a path any number of times without copying it.
+ */
+public class RobotStatePath
+{
+	public static final RobotStatePath EMPTY = new RobotStatePath(null, null);
+
+	private final RobotState state;
+	private final RobotStatePath previous;
+
+	private RobotStatePath(RobotState state, RobotStatePath previous)
+	{
+		this.state = state;
+		this.previous = previous;
+	}
+
+	/**
+	 * @return a path continuing this one with 'state', which should be newer
+	 *         than any state already on it
+	 */
+	public RobotStatePath addState(RobotState state)
+	{
+		return new RobotStatePath(state, this);
+	}
+
+	public boolean isEmpty()
+	{
+		return this.state == null;
+	}
+
+	/**
+	 * @return the newest state on the path
+	 */
+	public RobotState getState()
+	{
+		return this.state;
+	}
+
+	/**
+	 * @return the path without its newest state
+	 */
+	public RobotStatePath getPrevious()
+	{
+		return this.previous;
+	}
+}
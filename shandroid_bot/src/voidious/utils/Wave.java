@@ -3,15 +3,10 @@ package voidious.utils;
 import robocode.util.Utils;
 import voidious.enums.WavePosition;
 import voidious.utils.geom.Circle;
-import voidious.utils.geom.LineSeg;
 
-import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 import static voidious.utils.DiaUtils.*;
 
@@ -39,6 +34,7 @@ public class Wave implements Cloneable
 {
 	private static final double PRECISE_MEA_WALL_STICK = 120;
 	private static final Point2D.Double ORIGIN = new Point2D.Double(0, 0);
+	private static final double BOT_HALF_WIDTH = 18;
 	private static final double MAX_BOT_RADIUS = 18 / Math.cos(Math.PI / 4);
 	private static final int CLOCKWISE = 1;
 	private static final int COUNTERCLOCKWISE = -1;
@@ -83,11 +79,20 @@ public class Wave implements Cloneable
 	private double gunHeat;
 	private int enemiesAlive;
 	private long lastBulletFiredTime;
-	private List<BulletShadow> shadows;
+	private BulletShadows shadows;
 	private Double cachedPositiveEscapeAngle = null;
 	private Double cachedNegativeEscapeAngle = null;
 	private boolean usedNegativeSmoothingMea = false;
 	private boolean usedPositiveSmoothingMea = false;
+	// Data points already computed from this wave, by formula and aiming
+	// flag. Setters clear them, since any field may feed a formula.
+	private DistanceFormula[] dataPointFormulas = new DistanceFormula[4];
+	private boolean[] dataPointAiming = new boolean[4];
+	private double[][] dataPoints = new double[4][];
+	private int dataPointCount = 0;
+	// Scratch for preciseIntersection, made on first use
+	private double[] aimBounds;
+	private double[] crossings;
 
 	public Wave(String botName, Point2D.Double sourceLocation, Point2D.Double targetLocation, int fireRound, long fireTime,
 			double bulletPower, double targetHeading, double targetVelocity, int targetVelocitySign, BattleField battleField,
@@ -113,12 +118,13 @@ public class Wave implements Cloneable
 		this.bulletHitBullet = false;
 		this.firingWave = false;
 		this.altWave = false;
-		this.shadows = new ArrayList<>();
+		this.shadows = new BulletShadows();
 	}
 
 	public Wave setAbsBearing(double absBearing)
 	{
 		this.absBearing = absBearing;
+		this.clearDataPoints();
 		return this;
 	}
 
@@ -128,6 +134,7 @@ public class Wave implements Cloneable
 		this.bulletSpeed = (20 - (3 * power));
 		this.maxEscapeAngle = Math.asin(8.0 / this.bulletSpeed);
 		this.clearCachedPreciseEscapeAngles();
+		this.clearDataPoints();
 		return this;
 	}
 
@@ -168,6 +175,7 @@ public class Wave implements Cloneable
 				this.targetRevWallDistance = this.preciseEscapeAngle(NEGATIVE_GUESSFACTOR) / this.maxEscapeAngle;
 				break;
 		}
+		this.clearDataPoints();
 	}
 
 	private double orbitalWallDistance(int orientation)
@@ -325,17 +333,47 @@ public class Wave implements Cloneable
 		this.cachedNegativeEscapeAngle = null;
 	}
 
-	public boolean shadowed(double firingAngle)
+	/**
+	 * The data point 'formula' computed from this wave with the given aiming
+	 * flag, if it's still current, or null
+	 */
+	double[] memoizedDataPoint(DistanceFormula formula, boolean aiming)
 	{
-		for (BulletShadow shadow : this.shadows)
+		for (int x = 0; x < this.dataPointCount; x++)
 		{
-			firingAngle = normalizeAngle(firingAngle, shadow.getMinAngle());
-			if (firingAngle >= shadow.getMinAngle() && firingAngle <= shadow.getMaxAngle())
+			if (this.dataPointFormulas[x] == formula && this.dataPointAiming[x] == aiming)
 			{
-				return true;
+				return this.dataPoints[x];
 			}
 		}
-		return false;
+		return null;
+	}
+
+	void memoizeDataPoint(DistanceFormula formula, boolean aiming, double[] dataPoint)
+	{
+		if (this.dataPointCount == this.dataPoints.length)
+		{
+			int capacity = this.dataPoints.length * 2;
+			this.dataPointFormulas = Arrays.copyOf(this.dataPointFormulas, capacity);
+			this.dataPointAiming = Arrays.copyOf(this.dataPointAiming, capacity);
+			this.dataPoints = Arrays.copyOf(this.dataPoints, capacity);
+		}
+		this.dataPointFormulas[this.dataPointCount] = formula;
+		this.dataPointAiming[this.dataPointCount] = aiming;
+		this.dataPoints[this.dataPointCount] = dataPoint;
+		this.dataPointCount++;
+	}
+
+	private void clearDataPoints()
+	{
+		Arrays.fill(this.dataPointFormulas, 0, this.dataPointCount, null);
+		Arrays.fill(this.dataPoints, 0, this.dataPointCount, null);
+		this.dataPointCount = 0;
+	}
+
+	public boolean shadowed(double firingAngle)
+	{
+		return this.shadows.contains(firingAngle);
 	}
 
 	public void castShadow(Point2D.Double p1, Point2D.Double p2)
@@ -347,108 +385,134 @@ public class Wave implements Cloneable
 	{
 		shadowAngle1 = normalizeAngle(shadowAngle1, this.absBearing);
 		shadowAngle2 = normalizeAngle(shadowAngle2, shadowAngle1);
-		double min = Math.min(shadowAngle1, shadowAngle2);
-		double max = Math.max(shadowAngle1, shadowAngle2);
-		this.shadows.add(new BulletShadow(min, max));
-
-		Set<BulletShadow> deadShadows = new HashSet<>();
-		this.shadows.stream().filter(shadow1 -> !deadShadows.contains(shadow1))
-				.forEach(shadow1 -> this.shadows.stream().filter(shadow2 -> shadow1 != shadow2 && !deadShadows.contains(shadow2) && shadow1.overlaps(shadow2)).forEach(shadow2 -> {
-            shadow1.setMinAngle(Math.min(shadow1.getMinAngle(),
-                    normalizeAngle(shadow2.getMinAngle(), shadow1.getMinAngle())));
-            shadow1.setMaxAngle(Math.max(shadow1.getMaxAngle(),
-                    normalizeAngle(shadow2.getMaxAngle(), shadow1.getMaxAngle())));
-            deadShadows.add(shadow2);
-        }));
-		for (BulletShadow deadShadow : deadShadows)
-		{
-			this.shadows.remove(deadShadow);
-		}
+		this.shadows.add(Math.min(shadowAngle1, shadowAngle2), Math.max(shadowAngle1, shadowAngle2));
+	}
+
+	public void clearShadows()
+	{
+		this.shadows.clear();
 	}
 
 	public double shadowFactor(Intersection intersection)
 	{
+		if (this.shadows.isEmpty())
+		{
+			return 1;
+		}
+
 		double min = intersection.getAngle() - intersection.getBandwidth();
 		double max = intersection.getAngle() + intersection.getBandwidth();
-		double factor = 1;
-		for (BulletShadow shadow : this.shadows)
+		if (max <= min)
 		{
-			double shadowMin = normalizeAngle(shadow.getMinAngle(), min);
-			double shadowMax = normalizeAngle(shadow.getMaxAngle(), shadowMin);
-			if (shadowMin <= min && shadowMax >= max)
-			{
-				return 0;
-			}
-			else if (shadowMin >= min && shadowMin <= max)
-			{
-				factor -= (Math.min(max, shadowMax) - shadowMin) / (max - min);
-			}
-			else if (shadowMax >= min && shadowMax <= max)
-			{
-				factor -= (shadowMax - Math.max(min, shadowMin)) / (max - min);
-			}
+			return this.shadows.contains(min) ? 0 : 1;
 		}
-
-		return factor;
+		double covered = this.shadows.coveredFraction(min, max);
+		return (covered >= 1) ? 0 : 1 - covered;
 	}
 
+	/**
+	 * The range of angles the wave could hit the bot at over these states:
+	 * every corner between the wave's start and end circles, and everywhere
+	 * those circles cross a side of the bot. Works on raw coordinates in
+	 * scratch arrays kept by the wave, so it allocates only the result.
+	 */
 	public Intersection preciseIntersection(List<RobotState> waveBreakStates)
 	{
 		if (waveBreakStates == null || waveBreakStates.size() == 0)
 		{
 			return null;
 		}
-
-		ArrayList<Double> aimAngles = new ArrayList<>();
-		for (RobotState waveBreakState : waveBreakStates)
+		if (this.aimBounds == null)
 		{
-			List<Point2D.Double> corners = waveBreakState.botCorners();
-			Circle waveStart = new Circle(this.sourceLocation.x, this.sourceLocation.y, this.bulletSpeed
-					* (waveBreakState.getTime() - this.fireTime));
-			Circle waveEnd = new Circle(this.sourceLocation.x, this.sourceLocation.y, this.bulletSpeed
-					* (waveBreakState.getTime() - this.fireTime + 1));
+			this.aimBounds = new double[3];
+			this.crossings = new double[2];
+		}
 
-			aimAngles.addAll(corners.stream().filter(corner -> waveEnd.contains(corner) && !waveStart.contains(corner))
-					.map(corner -> absoluteBearing(this.sourceLocation, corner)).collect(Collectors.toList()));
+		int numAngles = 0;
+		for (int x = 0; x < waveBreakStates.size(); x++)
+		{
+			RobotState waveBreakState = waveBreakStates.get(x);
+			double botX = waveBreakState.getLocation().x;
+			double botY = waveBreakState.getLocation().y;
+			double startRadius = this.bulletSpeed * (waveBreakState.getTime() - this.fireTime);
+			double endRadius = this.bulletSpeed * (waveBreakState.getTime() - this.fireTime + 1);
 
-			for (Line2D.Double side : waveBreakState.botSides())
+			for (int corner = 0; corner < 4; corner++)
 			{
-				LineSeg seg = new LineSeg(side.x1, side.y1, side.x2, side.y2);
-				Point2D.Double[] intersects = waveStart.intersects(seg);
-				for (Point2D.Double intersect : intersects) {
-					if (intersect != null) {
-						aimAngles.add(absoluteBearing(this.sourceLocation, intersect));
-					}
-				}
-				intersects = waveEnd.intersects(seg);
-				if (intersects != null)
+				double cornerX = botX + ((corner < 2) ? -BOT_HALF_WIDTH : BOT_HALF_WIDTH);
+				double cornerY = botY + ((corner % 2 == 0) ? -BOT_HALF_WIDTH : BOT_HALF_WIDTH);
+				double distanceSq = square(cornerX - this.sourceLocation.x) + square(cornerY - this.sourceLocation.y);
+				if (distanceSq < endRadius * endRadius && !(distanceSq < startRadius * startRadius))
 				{
-					for (Point2D.Double intersect : intersects) {
-						if (intersect != null) {
-							aimAngles.add(absoluteBearing(this.sourceLocation, intersect));
-						}
-					}
+					this.addAimAngle(numAngles++, cornerX, cornerY);
 				}
 			}
-		}
-
-		double normalizeReference = aimAngles.get(0);
-		double minAngle = normalizeReference;
-		double maxAngle = normalizeReference;
 
-		for (double thisAngle : aimAngles)
+			for (int side = 0; side < 4; side++)
+			{
+				numAngles = this.addSideCrossings(numAngles, side, botX, botY, startRadius);
+				numAngles = this.addSideCrossings(numAngles, side, botX, botY, endRadius);
+			}
+		}
+		if (numAngles == 0)
 		{
-			thisAngle = normalizeAngle(thisAngle, normalizeReference);
-			maxAngle = Math.max(maxAngle, thisAngle);
-			minAngle = Math.min(minAngle, thisAngle);
+			return null;
 		}
 
-		double centerAngle = (maxAngle + minAngle) / 2;
-		double bandwidth = maxAngle - centerAngle;
+		double centerAngle = (this.aimBounds[2] + this.aimBounds[1]) / 2;
+		double bandwidth = this.aimBounds[2] - centerAngle;
 
 		return new Intersection(centerAngle, bandwidth);
 	}
 
+	/**
+	 * Adds the angles to where a circle around the source crosses one side of
+	 * the bot: 0 to 3 for top, right, bottom and left
+	 */
+	private int addSideCrossings(int numAngles, int side, double botX, double botY, double radius)
+	{
+		if (side % 2 == 0)
+		{
+			double sideY = botY + ((side == 0) ? -BOT_HALF_WIDTH : BOT_HALF_WIDTH);
+			int count = Circle.axisCrossings(this.sourceLocation.x, this.sourceLocation.y, radius, sideY, botX
+					- BOT_HALF_WIDTH, botX + BOT_HALF_WIDTH, this.crossings);
+			for (int x = 0; x < count; x++)
+			{
+				this.addAimAngle(numAngles++, this.crossings[x], sideY);
+			}
+		}
+		else
+		{
+			double sideX = botX + ((side == 1) ? BOT_HALF_WIDTH : -BOT_HALF_WIDTH);
+			int count = Circle.axisCrossings(this.sourceLocation.y, this.sourceLocation.x, radius, sideX, botY
+					- BOT_HALF_WIDTH, botY + BOT_HALF_WIDTH, this.crossings);
+			for (int x = 0; x < count; x++)
+			{
+				this.addAimAngle(numAngles++, sideX, this.crossings[x]);
+			}
+		}
+		return numAngles;
+	}
+
+	/**
+	 * Widens aimBounds (reference, min and max angle) to the angle to the
+	 * given point, normalized around the first angle added
+	 */
+	private void addAimAngle(int index, double x, double y)
+	{
+		double angle = Math.atan2(x - this.sourceLocation.x, y - this.sourceLocation.y);
+		if (index == 0)
+		{
+			this.aimBounds[0] = this.aimBounds[1] = this.aimBounds[2] = angle;
+		}
+		else
+		{
+			angle = normalizeAngle(angle, this.aimBounds[0]);
+			this.aimBounds[1] = Math.min(this.aimBounds[1], angle);
+			this.aimBounds[2] = Math.max(this.aimBounds[2], angle);
+		}
+	}
+
 	public WavePosition checkWavePosition(RobotState currentState)
 	{
 		return this.checkWavePosition(currentState, false, null);
@@ -485,11 +549,12 @@ public class Wave implements Cloneable
 			{
 				return WavePosition.BREAKING_CENTER;
 			}
-			List<Point2D.Double> corners = currentState.botCorners();
-			double startBulletDistance = this.distanceTraveled(currentState.getTime());
-			for (Point2D.Double corner : corners)
+			double startBulletDistanceSq = square(this.distanceTraveled(currentState.getTime()));
+			for (int corner = 0; corner < 4; corner++)
 			{
-				if (corner.distanceSq(this.sourceLocation) > square(startBulletDistance))
+				double cornerX = location.x + ((corner < 2) ? -BOT_HALF_WIDTH : BOT_HALF_WIDTH);
+				double cornerY = location.y + ((corner % 2 == 0) ? -BOT_HALF_WIDTH : BOT_HALF_WIDTH);
+				if (square(this.sourceLocation.x - cornerX) + square(this.sourceLocation.y - cornerY) > startBulletDistanceSq)
 				{
 					return WavePosition.BREAKING_CENTER;
 				}
@@ -543,6 +608,7 @@ public class Wave implements Cloneable
 	public void setBotName(String botName)
 	{
 		this.botName = botName;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -560,6 +626,7 @@ public class Wave implements Cloneable
 	public void setSourceLocation(Point2D.Double sourceLocation)
 	{
 		this.sourceLocation = sourceLocation;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -577,6 +644,7 @@ public class Wave implements Cloneable
 	public void setTargetLocation(Point2D.Double targetLocation)
 	{
 		this.targetLocation = targetLocation;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -594,6 +662,7 @@ public class Wave implements Cloneable
 	public void setFireRound(int fireRound)
 	{
 		this.fireRound = fireRound;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -611,6 +680,7 @@ public class Wave implements Cloneable
 	public void setFireTime(long fireTime)
 	{
 		this.fireTime = fireTime;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -628,6 +698,7 @@ public class Wave implements Cloneable
 	public void setBulletSpeed(double bulletSpeed)
 	{
 		this.bulletSpeed = bulletSpeed;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -645,6 +716,7 @@ public class Wave implements Cloneable
 	public void setMaxEscapeAngle(double maxEscapeAngle)
 	{
 		this.maxEscapeAngle = maxEscapeAngle;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -662,6 +734,7 @@ public class Wave implements Cloneable
 	public void setOrbitDirection(int orbitDirection)
 	{
 		this.orbitDirection = orbitDirection;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -679,6 +752,7 @@ public class Wave implements Cloneable
 	public void setTargetHeading(double targetHeading)
 	{
 		this.targetHeading = targetHeading;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -696,6 +770,7 @@ public class Wave implements Cloneable
 	public void setTargetRelativeHeading(double targetRelativeHeading)
 	{
 		this.targetRelativeHeading = targetRelativeHeading;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -713,6 +788,7 @@ public class Wave implements Cloneable
 	public void setTargetVelocity(double targetVelocity)
 	{
 		this.targetVelocity = targetVelocity;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -730,6 +806,7 @@ public class Wave implements Cloneable
 	public void setBattleField(BattleField battleField)
 	{
 		this.battleField = battleField;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -747,6 +824,7 @@ public class Wave implements Cloneable
 	public void setPredictor(MovementPredictor predictor)
 	{
 		this.predictor = predictor;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -764,6 +842,7 @@ public class Wave implements Cloneable
 	public void setHitByBullet(boolean hitByBullet)
 	{
 		this.hitByBullet = hitByBullet;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -781,6 +860,7 @@ public class Wave implements Cloneable
 	public void setBulletHitBullet(boolean bulletHitBullet)
 	{
 		this.bulletHitBullet = bulletHitBullet;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -798,6 +878,7 @@ public class Wave implements Cloneable
 	public void setFiringWave(boolean firingWave)
 	{
 		this.firingWave = firingWave;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -815,6 +896,7 @@ public class Wave implements Cloneable
 	public void setAltWave(boolean altWave)
 	{
 		this.altWave = altWave;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -832,6 +914,7 @@ public class Wave implements Cloneable
 	public void setTargetAccel(double targetAccel)
 	{
 		this.targetAccel = targetAccel;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -849,6 +932,7 @@ public class Wave implements Cloneable
 	public void setTargetVelocitySign(int targetVelocitySign)
 	{
 		this.targetVelocitySign = targetVelocitySign;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -866,6 +950,7 @@ public class Wave implements Cloneable
 	public void setTargetDistance(double targetDistance)
 	{
 		this.targetDistance = targetDistance;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -883,6 +968,7 @@ public class Wave implements Cloneable
 	public void setTargetDistanceToNearestBot(double targetDistanceToNearestBot)
 	{
 		this.targetDistanceToNearestBot = targetDistanceToNearestBot;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -900,6 +986,7 @@ public class Wave implements Cloneable
 	public void setTargetDchangeTime(long targetDchangeTime)
 	{
 		this.targetDchangeTime = targetDchangeTime;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -917,6 +1004,7 @@ public class Wave implements Cloneable
 	public void setTargetVchangeTime(long targetVchangeTime)
 	{
 		this.targetVchangeTime = targetVchangeTime;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -934,6 +1022,7 @@ public class Wave implements Cloneable
 	public void setTargetWallDistance(double targetWallDistance)
 	{
 		this.targetWallDistance = targetWallDistance;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -951,6 +1040,7 @@ public class Wave implements Cloneable
 	public void setTargetRevWallDistance(double targetRevWallDistance)
 	{
 		this.targetRevWallDistance = targetRevWallDistance;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -968,6 +1058,7 @@ public class Wave implements Cloneable
 	public void setTargetDl8t(double targetDl8t)
 	{
 		this.targetDl8t = targetDl8t;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -985,6 +1076,7 @@ public class Wave implements Cloneable
 	public void setTargetDl20t(double targetDl20t)
 	{
 		this.targetDl20t = targetDl20t;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -1002,6 +1094,7 @@ public class Wave implements Cloneable
 	public void setTargetDl40t(double targetDl40t)
 	{
 		this.targetDl40t = targetDl40t;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -1019,6 +1112,7 @@ public class Wave implements Cloneable
 	public void setTargetEnergy(double targetEnergy)
 	{
 		this.targetEnergy = targetEnergy;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -1036,6 +1130,7 @@ public class Wave implements Cloneable
 	public void setSourceEnergy(double sourceEnergy)
 	{
 		this.sourceEnergy = sourceEnergy;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -1053,6 +1148,7 @@ public class Wave implements Cloneable
 	public void setGunHeat(double gunHeat)
 	{
 		this.gunHeat = gunHeat;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -1070,6 +1166,7 @@ public class Wave implements Cloneable
 	public void setEnemiesAlive(int enemiesAlive)
 	{
 		this.enemiesAlive = enemiesAlive;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -1087,23 +1184,7 @@ public class Wave implements Cloneable
 	public void setLastBulletFiredTime(long lastBulletFiredTime)
 	{
 		this.lastBulletFiredTime = lastBulletFiredTime;
-	}
-
-	/**
-	 * @return the shadows
-	 */
-	public List<BulletShadow> getShadows()
-	{
-		return this.shadows;
-	}
-
-	/**
-	 * @param shadows
-	 *            the shadows to set
-	 */
-	public void setShadows(List<BulletShadow> shadows)
-	{
-		this.shadows = shadows;
+		this.clearDataPoints();
 	}
 
 	/**
@@ -35,30 +35,72 @@ public class WaveManager
 	private static final int WAVE_MATCH_THRESHOLD = 50;
 	private static final double COOLING_RATE = 0.1;
 	private static final double MAX_GUN_HEAT = 1.6;
+	private static final int INITIAL_TICKS = 64;
 
+	// Live waves, farthest traveled first as of the last sort
 	private List<Wave> waves;
-	private Map<Wave, RobotStateLog> stateLogs;
+	// The waves fired on each tick, in the order they were added, in a ring
+	// indexed by fire time. It grows as needed to span the oldest and newest
+	// live fire times, so a wave's fire time mustn't change once it's added.
+	private WaveTick[] ticks;
+	private long firstTick;
+	private long lastTick;
+	private List<Wave> brokenWaves;
+
+	private static final class WaveTick
+	{
+		private long fireTime;
+		private final List<Wave> waves = new ArrayList<>(2);
+	}
 
 	public WaveManager()
 	{
 		this.waves = new ArrayList<>();
-		this.stateLogs = new HashMap<>();
+		this.ticks = newTicks(INITIAL_TICKS);
+		this.brokenWaves = new ArrayList<>();
 	}
 
 	public void initRound()
 	{
 		this.waves.clear();
-		this.stateLogs.clear();
+		for (WaveTick tick : this.ticks)
+		{
+			tick.waves.clear();
+		}
 	}
 
 	public void addWave(Wave wave)
 	{
+		long fireTime = wave.getFireTime();
+		if (this.waves.isEmpty())
+		{
+			this.firstTick = fireTime;
+			this.lastTick = fireTime;
+		}
+		else
+		{
+			this.firstTick = Math.min(this.firstTick, fireTime);
+			this.lastTick = Math.max(this.lastTick, fireTime);
+			if (this.lastTick - this.firstTick >= this.ticks.length)
+			{
+				this.growTicks();
+			}
+		}
+
+		WaveTick tick = this.ticks[this.slot(fireTime)];
+		tick.fireTime = fireTime;
+		tick.waves.add(wave);
+		// A new wave has usually traveled the least, so this keeps the order
 		this.waves.add(wave);
 	}
 
 	public void checkCurrentWaves(long currentTime, CurrentWaveListener listener)
 	{
-		this.waves.stream().filter(w -> w.getFireTime() == currentTime).forEach(listener::onCurrentWave);
+		List<Wave> tickWaves = this.wavesFiredAt(currentTime);
+		for (int x = 0; x < tickWaves.size(); x++)
+		{
+			listener.onCurrentWave(tickWaves.get(x));
+		}
 	}
 
 	public void forAllWaves(AllWaveListener listener)
@@ -66,53 +108,84 @@ public class WaveManager
 		this.waves.forEach(listener::onWave);
 	}
 
-	public void checkActiveWaves(long currentTime, RobotState lastScanState, WaveBreakListener listener)
+	/**
+	 * Finds the waves that have passed the target, passing each to 'listener'
+	 * with the states from 'targetStateLog' that it broke over, and removes
+	 * them
+	 */
+	public void checkActiveWaves(long currentTime, RobotState lastScanState, RobotStateLog targetStateLog,
+			WaveBreakListener listener)
 	{
 		if (lastScanState.getTime() == currentTime)
 		{
-			Iterator<Wave> wavesIterator = this.waves.iterator();
-			while (wavesIterator.hasNext())
+			this.sortByDistanceTraveled(currentTime);
+			for (int x = 0; x < this.waves.size(); x++)
 			{
-				Wave w = wavesIterator.next();
-				this.addRobotState(w, lastScanState);
+				Wave w = this.waves.get(x);
 				if (w.checkWavePosition(lastScanState) == WavePosition.GONE)
 				{
-					List<RobotState> waveBreakStates = this.getWaveBreakStates(w, currentTime);
+					List<RobotState> waveBreakStates = this.getWaveBreakStates(w, currentTime, targetStateLog);
 					listener.onWaveBreak(w, waveBreakStates);
-					wavesIterator.remove();
+					this.brokenWaves.add(w);
 				}
 			}
+			if (!this.brokenWaves.isEmpty())
+			{
+				this.removeBrokenWaves();
+			}
 		}
 	}
 
-	private void addRobotState(Wave w, RobotState state)
+	/**
+	 * Removes all the waves collected in brokenWaves, which are in the same
+	 * order as in the list of live waves, in one pass
+	 */
+	private void removeBrokenWaves()
 	{
-		RobotStateLog stateLog;
-		if (this.stateLogs.containsKey(w))
+		int kept = 0;
+		int broken = 0;
+		for (int x = 0; x < this.waves.size(); x++)
 		{
-			stateLog = this.stateLogs.get(w);
+			Wave w = this.waves.get(x);
+			if (broken < this.brokenWaves.size() && this.brokenWaves.get(broken) == w)
+			{
+				broken++;
+				this.ticks[this.slot(w.getFireTime())].waves.remove(w);
+			}
+			else
+			{
+				this.waves.set(kept++, w);
+			}
 		}
-		else
+		this.waves.subList(kept, this.waves.size()).clear();
+		this.brokenWaves.clear();
+
+		if (!this.waves.isEmpty())
 		{
-			stateLog = new RobotStateLog();
-			this.stateLogs.put(w, stateLog);
+			while (this.wavesFiredAt(this.firstTick).isEmpty())
+			{
+				this.firstTick++;
+			}
+			while (this.wavesFiredAt(this.lastTick).isEmpty())
+			{
+				this.lastTick--;
+			}
 		}
-		stateLog.addState(state);
 	}
 
-	private List<RobotState> getWaveBreakStates(Wave w, long currentTime)
+	/**
+	 * The states the wave broke over, from the slice of the target's timeline
+	 * between the wave's fire time and now
+	 */
+	private List<RobotState> getWaveBreakStates(Wave w, long currentTime, RobotStateLog targetStateLog)
 	{
 		List<RobotState> waveBreakStates = new ArrayList<>();
-		if (this.stateLogs.containsKey(w))
+		for (long time = w.getFireTime(); time < currentTime; time++)
 		{
-			RobotStateLog log = this.stateLogs.get(w);
-			for (long time = w.getFireTime(); time < currentTime; time++)
+			RobotState state = targetStateLog.getState(time);
+			if (state != null && w.checkWavePosition(state).isBreaking())
 			{
-				RobotState state = log.getState(time);
-				if (state != null && w.checkWavePosition(state).isBreaking())
-				{
-					waveBreakStates.add(state);
-				}
+				waveBreakStates.add(state);
 			}
 		}
 		return waveBreakStates;
@@ -124,8 +197,12 @@ public class WaveManager
 		double closestDistance = Double.POSITIVE_INFINITY;
 		Wave closestWave = null;
 
-		for (Wave w : this.waves)
+		// Each wave has its own source, so any of them might match; sorting
+		// just makes ties go to the wave that has traveled farthest
+		this.sortByDistanceTraveled(currentTime);
+		for (int x = 0; x < this.waves.size(); x++)
 		{
+			Wave w = this.waves.get(x);
 			if (!w.isAltWave() && (!onlyFiring || w.isFiringWave())
 					&& (bulletPower == Wave.ANY_BULLET_POWER || Math.abs(bulletPower - w.getBulletPower()) < 0.001)
 					&& (botName == null || botName.equals(w.getBotName()) || botName.equals("")))
@@ -148,12 +225,18 @@ public class WaveManager
 		return closestWave;
 	}
 
+	/**
+	 * The surfIndex'th wave that hasn't reached 'unsurfablePosition' yet,
+	 * counting from the wave that has traveled farthest
+	 */
 	public Wave findSurfableWave(int surfIndex, RobotState targetState, WavePosition unsurfablePosition)
 	{
 		int searchWaveIndex = 0;
 
-		for (Wave w : this.waves)
+		this.sortByDistanceTraveled(targetState.getTime());
+		for (int x = 0; x < this.waves.size(); x++)
 		{
+			Wave w = this.waves.get(x);
 			if (w.isFiringWave() && !w.processedBulletHit())
 			{
 				WavePosition wavePosition = w.checkWavePosition(targetState, unsurfablePosition);
@@ -174,14 +257,8 @@ public class WaveManager
 
 	public Wave getWaveByFireTime(long fireTime)
 	{
-		for (Wave w : this.waves)
-		{
-			if (w.getFireTime() == fireTime)
-			{
-				return w;
-			}
-		}
-		return null;
+		List<Wave> tickWaves = this.wavesFiredAt(fireTime);
+		return tickWaves.isEmpty() ? null : tickWaves.get(0);
 	}
 
 	public Wave interpolateWaveByFireTime(long fireTime, double sourceHeading, double sourceVelocity,
@@ -189,24 +266,15 @@ public class WaveManager
 	{
 		Wave beforeWave = null;
 		Wave afterWave = null;
-		for (Wave w : this.waves)
+		if (!this.waves.isEmpty())
 		{
-			if (!w.isAltWave())
+			for (long time = Math.min(fireTime - 1, this.lastTick); beforeWave == null && time >= this.firstTick; time--)
 			{
-				if (w.getFireTime() < fireTime)
-				{
-					if (beforeWave == null || w.getFireTime() > beforeWave.getFireTime())
-					{
-						beforeWave = w;
-					}
-				}
-				if (w.getFireTime() > fireTime)
-				{
-					if (afterWave == null || w.getFireTime() < afterWave.getFireTime())
-					{
-						afterWave = w;
-					}
-				}
+				beforeWave = this.firstRealWave(time);
+			}
+			for (long time = Math.max(fireTime + 1, this.firstTick); afterWave == null && time <= this.lastTick; time++)
+			{
+				afterWave = this.firstRealWave(time);
 			}
 		}
 
@@ -303,19 +371,107 @@ public class WaveManager
 
 	public long getLastFireTime()
 	{
-		long lastFireTime = -1;
-		for (Wave w : this.waves)
+		if (!this.waves.isEmpty())
 		{
-			if (!w.isAltWave() && w.getFireTime() > lastFireTime)
+			for (long time = this.lastTick; time >= this.firstTick; time--)
 			{
-				lastFireTime = w.getFireTime();
+				if (this.firstRealWave(time) != null)
+				{
+					return time;
+				}
 			}
 		}
-		return lastFireTime;
+		return -1;
 	}
 
 	public int size()
 	{
 		return this.waves.size();
 	}
-}
\ No newline at end of file
+
+	/**
+	 * The waves fired at 'fireTime', in the order they were added; callers
+	 * mustn't modify the list
+	 */
+	private List<Wave> wavesFiredAt(long fireTime)
+	{
+		WaveTick tick = this.ticks[this.slot(fireTime)];
+		return (tick.fireTime == fireTime) ? tick.waves : Collections.emptyList();
+	}
+
+	/**
+	 * The first wave fired at 'fireTime' that isn't an alt wave, or null
+	 */
+	private Wave firstRealWave(long fireTime)
+	{
+		List<Wave> tickWaves = this.wavesFiredAt(fireTime);
+		for (int x = 0; x < tickWaves.size(); x++)
+		{
+			if (!tickWaves.get(x).isAltWave())
+			{
+				return tickWaves.get(x);
+			}
+		}
+		return null;
+	}
+
+	private int slot(long fireTime)
+	{
+		return (int) (fireTime & (this.ticks.length - 1));
+	}
+
+	/**
+	 * Re-rings the live waves into enough ticks to span firstTick to lastTick
+	 */
+	private void growTicks()
+	{
+		WaveTick[] oldTicks = this.ticks;
+		int length = oldTicks.length;
+		while (this.lastTick - this.firstTick >= length)
+		{
+			length *= 2;
+		}
+		this.ticks = newTicks(length);
+		for (WaveTick oldTick : oldTicks)
+		{
+			if (!oldTick.waves.isEmpty())
+			{
+				WaveTick tick = this.ticks[this.slot(oldTick.fireTime)];
+				tick.fireTime = oldTick.fireTime;
+				tick.waves.addAll(oldTick.waves);
+			}
+		}
+	}
+
+	private static WaveTick[] newTicks(int length)
+	{
+		WaveTick[] ticks = new WaveTick[length];
+		for (int x = 0; x < length; x++)
+		{
+			ticks[x] = new WaveTick();
+			ticks[x].fireTime = Long.MIN_VALUE;
+		}
+		return ticks;
+	}
+
+	/**
+	 * Insertion sorts the live waves by distance traveled at 'currentTime',
+	 * farthest first, keeping the order of ties. Waves mostly keep their
+	 * places from one call to the next, so this is usually a single pass.
+	 */
+	private void sortByDistanceTraveled(long currentTime)
+	{
+		for (int x = 1; x < this.waves.size(); x++)
+		{
+			Wave w = this.waves.get(x);
+			double distance = w.distanceTraveled(currentTime);
+			int y = x - 1;
+			while (y >= 0 && this.waves.get(y).distanceTraveled(currentTime) < distance)
+			{
+				this.waves.set(y + 1, this.waves.get(y));
+				y--;
+			}
+			this.waves.set(y + 1, w);
+		}
+	}
+}
@@ -105,6 +105,43 @@ public class Circle
 		return solutions;
 	}
 
+	/**
+	 * Finds where a circle crosses an axis-aligned line, working in the line's
+	 * frame: 'along' is the center's coordinate along the line, 'across' the
+	 * other one, and the line sits at 'line' on the across axis. Writes the
+	 * along-axis positions of crossings strictly between 'min' and 'max' into
+	 * 'crossings', which needs room for two, and returns how many there are.
+	 * Gives the same values as intersects() would for the same segment.
+	 */
+	public static int axisCrossings(double along, double across, double r, double line, double min, double max,
+			double[] crossings)
+	{
+		double b = 2 * -along;
+		double c = (along * along) + (across * across) + (line * line) - (2 * line * across) - (r * r);
+		double discrim = (b * b) - (4 * c);
+		if (discrim < 0)
+		{
+			return 0;
+		}
+
+		int count = 0;
+		double sqrtDiscrim = Math.sqrt(discrim);
+		double x1 = (-b + sqrtDiscrim) / 2;
+		if (x1 > min && x1 < max)
+		{
+			crossings[count++] = x1;
+		}
+		if (sqrtDiscrim > 0)
+		{
+			double x2 = (-b - sqrtDiscrim) / 2;
+			if (x2 > min && x2 < max)
+			{
+				crossings[count++] = x2;
+			}
+		}
+		return count;
+	}
+
 	public boolean contains(Point2D.Double p)
 	{
 		double z = DiaUtils.square(p.x - this.h) + DiaUtils.square(p.y - this.k);
@@ -0,0 +1,169 @@
+package ags.utils;
+
+import ags.utils.dataStructures.ResultHeap;
+import ags.utils.dataStructures.WeightedSqrEuclid;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that searches running alongside inserts see each insert either not
+ * at all or completely. One thread adds points while others search; each
+ * search's distances must match a linear scan over the points present after
+ * some number of inserts between those completed before the search started
+ * and those started before it ended. Covers unbounded and size-limited trees.
+ * Run with
+ * 
+ *   javac -d out -sourcepath src test/ags/utils/KdTreeConcurrencyCheck.java
+ *   java -cp out ags.utils.KdTreeConcurrencyCheck
+ * 
+ * from shandroid_bot. Exits non-zero on any mismatch.
+ */
+public class KdTreeConcurrencyCheck
+{
+	private static final int DIMENSIONS = 5;
+	private static final int POINTS = 20000;
+	private static final int SIZE_LIMIT = 2000;
+	private static final int SEARCHERS = 3;
+	private static final int SEARCHES = 5000;
+	private static final int K = 12;
+
+	private static class Search
+	{
+		private double[] location;
+		private int minAdded;
+		private int maxAdded;
+		private double[] found;
+	}
+
+	public static void main(String[] args) throws InterruptedException
+	{
+		int failures = check(1, null) + check(2, SIZE_LIMIT);
+		System.out.println(failures == 0 ? "OK" : failures + " mismatches");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	private static int check(long seed, Integer sizeLimit) throws InterruptedException
+	{
+		Random random = new Random(seed);
+		double[] weights = { 1, 2, 0.5, 3, 1.5 };
+		double[][] points = new double[POINTS][DIMENSIONS];
+		for (double[] point : points)
+		{
+			for (int i = 0; i < DIMENSIONS; i++)
+			{
+				// Coarse values, so there are duplicates and ties
+				point[i] = random.nextInt(50) / 10.0;
+			}
+		}
+
+		WeightedSqrEuclid<Integer> tree = new WeightedSqrEuclid<>(DIMENSIONS, sizeLimit);
+		tree.setWeights(weights);
+		AtomicInteger added = new AtomicInteger();
+
+		// Searchers only record what they saw; checking it all waits until
+		// the inserts are done, so the searches overlap as many as possible
+		Search[][] searches = new Search[SEARCHERS][SEARCHES];
+		Thread[] searchers = new Thread[SEARCHERS];
+		for (int s = 0; s < SEARCHERS; s++)
+		{
+			Search[] recorded = searches[s];
+			long searcherSeed = seed * 100 + s;
+			searchers[s] = new Thread(() -> {
+				Random queries = new Random(searcherSeed);
+				ResultHeap resultHeap = new ResultHeap(K);
+				for (int q = 0; q < SEARCHES && added.get() < POINTS; q++)
+				{
+					Search search = new Search();
+					search.location = new double[DIMENSIONS];
+					for (int i = 0; i < DIMENSIONS; i++)
+					{
+						search.location[i] = queries.nextDouble() * 5;
+					}
+					search.minAdded = added.get();
+					tree.nearestNeighbor(search.location, K, weights, resultHeap);
+					search.maxAdded = Math.min(POINTS, added.get() + 1);
+					search.found = Arrays.copyOf(resultHeap.getDistance(), resultHeap.getValues());
+					Arrays.sort(search.found);
+					recorded[q] = search;
+				}
+			});
+			searchers[s].start();
+		}
+
+		for (int p = 0; p < POINTS; p++)
+		{
+			tree.addPoint(points[p], p);
+			added.set(p + 1);
+		}
+		for (Thread searcher : searchers)
+		{
+			searcher.join();
+		}
+
+		int count = 0;
+		int failures = 0;
+		for (Search[] recorded : searches)
+		{
+			for (Search search : recorded)
+			{
+				if (search == null)
+				{
+					break;
+				}
+				count++;
+				if (!matchesSomeSnapshot(points, sizeLimit, search, weights))
+				{
+					failures++;
+				}
+			}
+		}
+		System.out.println("limit " + sizeLimit + ": " + count + " searches, " + failures + " mismatches");
+		return failures;
+	}
+
+	/**
+	 * Whether a search's distances match a linear scan over the points
+	 * present after any number of inserts it could have seen
+	 */
+	private static boolean matchesSomeSnapshot(double[][] points, Integer sizeLimit, Search search, double[] weights)
+	{
+		for (int n = search.minAdded; n <= search.maxAdded; n++)
+		{
+			int from = (sizeLimit == null) ? 0 : Math.max(0, n - sizeLimit);
+			if (Arrays.equals(search.found, bruteForce(points, from, n, search.location, weights)))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static double[] bruteForce(double[][] points, int from, int to, double[] location, double[] weights)
+	{
+		// Insertion into a sorted array of the nearest K so far
+		double[] nearest = new double[Math.min(K, to - from)];
+		int count = 0;
+		for (int p = from; p < to; p++)
+		{
+			double d = 0;
+			for (int i = 0; i < DIMENSIONS; i++)
+			{
+				double diff = (points[p][i] - location[i]) * weights[i];
+				d += diff * diff;
+			}
+			if (count == nearest.length && d >= nearest[count - 1])
+			{
+				continue;
+			}
+			int j = (count == nearest.length) ? count - 1 : count++;
+			for (; j > 0 && nearest[j - 1] > d; j--)
+			{
+				nearest[j] = nearest[j - 1];
+			}
+			nearest[j] = d;
+		}
+		return nearest;
+	}
+}
@@ -0,0 +1,116 @@
+package ags.utils;
+
+import ags.utils.dataStructures.ResultHeap;
+import ags.utils.dataStructures.WeightedSqrEuclid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Regression check for trees full of duplicate and NaN points, which once
+ * split forever on insert, eviction or rebuild until memory ran out. Fills
+ * bounded and unbounded trees with coordinates drawn from {0, 1, NaN}, then
+ * compares nearest neighbor distances against a linear scan. Run with
+ * 
+ *   javac -d out -sourcepath src test/ags/utils/KdTreeDegenerateCheck.java
+ *   java -cp out ags.utils.KdTreeDegenerateCheck
+ * 
+ * from shandroid_bot. Exits non-zero on any mismatch.
+ */
+public class KdTreeDegenerateCheck
+{
+	private static final int DIMENSIONS = 4;
+	private static final int POINTS = 5000;
+	private static final int SIZE_LIMIT = 500;
+	private static final int QUERIES = 200;
+	private static final int K = 10;
+	private static final double[] VALUES = { 0, 1, Double.NaN };
+
+	public static void main(String[] args)
+	{
+		int failures = 0;
+		for (long seed = 1; seed <= 6; seed++)
+		{
+			failures += check(seed, null, false, 0);
+			failures += check(seed, SIZE_LIMIT, false, 1.0);
+			failures += check(seed, SIZE_LIMIT, true, 1.0);
+			failures += check(seed, SIZE_LIMIT, false, 0);
+		}
+		System.out.println(failures == 0 ? "OK" : failures + " mismatches");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	private static int check(long seed, Integer sizeLimit, boolean floatStorage, double rebuildRatio)
+	{
+		Random random = new Random(seed);
+		double[] weights = { 1, 2, 0.5, 3 };
+		WeightedSqrEuclid<Integer> tree = new WeightedSqrEuclid<>(DIMENSIONS, sizeLimit, floatStorage);
+		tree.setWeights(weights);
+		tree.setRebuildRatio(rebuildRatio);
+		List<double[]> points = new ArrayList<>();
+		for (int i = 0; i < POINTS; i++)
+		{
+			double[] point = randomPoint(random);
+			tree.addPoint(point, i);
+			points.add(point);
+		}
+		int kept = (sizeLimit == null) ? points.size() : sizeLimit;
+		List<double[]> live = points.subList(points.size() - kept, points.size());
+		if (tree.size() != live.size())
+		{
+			System.out.println("seed " + seed + ": size " + tree.size() + ", expected " + live.size());
+			return 1;
+		}
+
+		int failures = 0;
+		ResultHeap resultHeap = new ResultHeap(K);
+		for (int q = 0; q < QUERIES; q++)
+		{
+			double[] location = randomPoint(random);
+			tree.nearestNeighbor(location, K, weights, resultHeap);
+			double[] found = Arrays.copyOf(resultHeap.getDistance(), resultHeap.getValues());
+			double[] expected = bruteForce(live, location, weights);
+			Arrays.sort(found);
+			if (!Arrays.equals(found, expected))
+			{
+				System.out.println("seed " + seed + ", limit " + sizeLimit + ", floats " + floatStorage + ": "
+						+ Arrays.toString(found) + " != " + Arrays.toString(expected));
+				failures++;
+			}
+		}
+		return failures;
+	}
+
+	private static double[] randomPoint(Random random)
+	{
+		double[] point = new double[DIMENSIONS];
+		for (int i = 0; i < DIMENSIONS; i++)
+		{
+			// Mostly zeros, so most points are exact duplicates
+			point[i] = (random.nextInt(4) == 0) ? VALUES[random.nextInt(VALUES.length)] : 0;
+		}
+		return point;
+	}
+
+	private static double[] bruteForce(List<double[]> points, double[] location, double[] weights)
+	{
+		double[] distances = new double[points.size()];
+		for (int p = 0; p < points.size(); p++)
+		{
+			double d = 0;
+			for (int i = 0; i < DIMENSIONS; i++)
+			{
+				double diff = (points.get(p)[i] - location[i]) * weights[i];
+				if (!Double.isNaN(diff))
+				{
+					d += diff * diff;
+				}
+			}
+			distances[p] = d;
+		}
+		Arrays.sort(distances);
+		return Arrays.copyOf(distances, Math.min(K, distances.length));
+	}
+}
@@ -0,0 +1,122 @@
+package ags.utils;
+
+import ags.utils.dataStructures.ResultHeap;
+import ags.utils.dataStructures.WeightedSqrEuclid;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks trees storing floats, bounded and unbounded. Their distances must
+ * match a linear scan over the points rounded to floats exactly, and the
+ * double tree's distances to within float rounding. Run with
+ * 
+ *   javac -d out -sourcepath src test/ags/utils/KdTreeFloatStorageCheck.java
+ *   java -cp out ags.utils.KdTreeFloatStorageCheck
+ * 
+ * from shandroid_bot. Exits non-zero on any mismatch.
+ */
+public class KdTreeFloatStorageCheck
+{
+	private static final int DIMENSIONS = 8;
+	private static final int POINTS = 30000;
+	private static final int SIZE_LIMIT = 2000;
+	private static final int QUERY_INTERVAL = 37;
+	private static final int K = 20;
+	private static final double MAX_RELATIVE_ERROR = 1e-5;
+
+	public static void main(String[] args)
+	{
+		int failures = check(13, null) + check(14, SIZE_LIMIT);
+		System.out.println(failures == 0 ? "OK" : failures + " mismatches");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	private static int check(long seed, Integer sizeLimit)
+	{
+		Random random = new Random(seed);
+		double[] weights = { 1, 2, 3, 1, 0.5, 2, 1, 4 };
+		WeightedSqrEuclid<Integer> doubleTree = new WeightedSqrEuclid<>(DIMENSIONS, sizeLimit);
+		WeightedSqrEuclid<Integer> floatTree = new WeightedSqrEuclid<>(DIMENSIONS, sizeLimit, true);
+		doubleTree.setWeights(weights);
+		floatTree.setWeights(weights);
+		double[][] rounded = new double[POINTS][DIMENSIONS];
+		ResultHeap doubleResults = new ResultHeap(K);
+		ResultHeap floatResults = new ResultHeap(K);
+
+		int failures = 0;
+		int queries = 0;
+		double maxRelativeError = 0;
+		for (int n = 0; n < POINTS; n++)
+		{
+			double[] point = new double[DIMENSIONS];
+			for (int i = 0; i < DIMENSIONS; i++)
+			{
+				// A few coarse axes, so there are ties
+				point[i] = (i < 3) ? random.nextInt(10) / 9.0 : random.nextDouble();
+				rounded[n][i] = (float) point[i];
+			}
+			doubleTree.addPoint(point, n);
+			floatTree.addPoint(point, n);
+
+			if (n % QUERY_INTERVAL != 0)
+			{
+				continue;
+			}
+			queries++;
+			double[] location = new double[DIMENSIONS];
+			for (int i = 0; i < DIMENSIONS; i++)
+			{
+				location[i] = random.nextDouble();
+			}
+			int from = (sizeLimit == null) ? 0 : Math.max(0, n + 1 - sizeLimit);
+			doubleTree.nearestNeighbor(location, K, weights, doubleResults);
+			floatTree.nearestNeighbor(location, K, weights, floatResults);
+			double[] doubleFound = sortedDistances(doubleResults);
+			double[] floatFound = sortedDistances(floatResults);
+			double[] expected = bruteForce(rounded, from, n + 1, location, weights);
+			if (!Arrays.equals(floatFound, expected))
+			{
+				System.out.println("limit " + sizeLimit + ", point " + n + ": " + Arrays.toString(floatFound) + " != "
+						+ Arrays.toString(expected));
+				failures++;
+			}
+			for (int j = 0; j < doubleFound.length; j++)
+			{
+				double error = Math.abs(doubleFound[j] - floatFound[j]) / Math.max(1e-12, doubleFound[j]);
+				maxRelativeError = Math.max(maxRelativeError, error);
+			}
+		}
+		if (maxRelativeError > MAX_RELATIVE_ERROR)
+		{
+			failures++;
+		}
+		System.out.println("limit " + sizeLimit + ": " + queries + " queries, " + failures
+				+ " mismatches, max relative distance error " + maxRelativeError);
+		return failures;
+	}
+
+	private static double[] sortedDistances(ResultHeap resultHeap)
+	{
+		double[] distances = Arrays.copyOf(resultHeap.getDistance(), resultHeap.getValues());
+		Arrays.sort(distances);
+		return distances;
+	}
+
+	private static double[] bruteForce(double[][] points, int from, int to, double[] location, double[] weights)
+	{
+		double[] distances = new double[to - from];
+		for (int p = from; p < to; p++)
+		{
+			double d = 0;
+			for (int i = 0; i < DIMENSIONS; i++)
+			{
+				double diff = (points[p][i] - location[i]) * weights[i];
+				d += diff * diff;
+			}
+			distances[p - from] = d;
+		}
+		Arrays.sort(distances);
+		return Arrays.copyOf(distances, Math.min(K, distances.length));
+	}
+}
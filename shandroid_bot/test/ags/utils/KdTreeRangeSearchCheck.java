@@ -0,0 +1,104 @@
+package ags.utils;
+
+import ags.utils.dataStructures.ResultHeap;
+import ags.utils.dataStructures.WeightedSqrEuclid;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares range searches with a linear scan, then searches again from inside
+ * a range search's visitor with far different weights on a tree with weight
+ * drift rebuilds on. That once deadlocked, the nested search trying to
+ * rebuild while the outer one held the read lock. Run with
+ * 
+ *   javac -d out -sourcepath src test/ags/utils/KdTreeRangeSearchCheck.java
+ *   java -cp out ags.utils.KdTreeRangeSearchCheck
+ * 
+ * from shandroid_bot. Exits non-zero on any mismatch, or if the nested search
+ * hangs.
+ */
+public class KdTreeRangeSearchCheck
+{
+	private static final int DIMENSIONS = 4;
+	private static final int POINTS = 3000;
+	private static final int QUERIES = 300;
+	private static final long NESTED_TIMEOUT_MILLIS = 10000;
+
+	public static void main(String[] args) throws InterruptedException
+	{
+		Random random = new Random(11);
+		double[] weights = { 1, 2, 0.5, 3 };
+		WeightedSqrEuclid<Integer> tree = new WeightedSqrEuclid<>(DIMENSIONS, null);
+		tree.setWeights(weights);
+		tree.setRebuildOnWeightDrift(true);
+		double[][] points = new double[POINTS][];
+		for (int p = 0; p < POINTS; p++)
+		{
+			points[p] = randomPoint(random);
+			tree.addPoint(points[p], p);
+		}
+
+		int failures = 0;
+		for (int q = 0; q < QUERIES; q++)
+		{
+			double[] location = randomPoint(random);
+			double radius = random.nextDouble() * 0.5;
+			boolean[] visited = new boolean[POINTS];
+			int count = tree.rangeSearch(location, radius, weights, Integer.MAX_VALUE,
+					(distance, value) -> visited[value] = true);
+			int expected = 0;
+			for (int p = 0; p < POINTS; p++)
+			{
+				boolean inRange = distance(points[p], location, weights) <= radius;
+				expected += inRange ? 1 : 0;
+				if (inRange != visited[p])
+				{
+					failures++;
+				}
+			}
+			if (count != expected)
+			{
+				System.out.println("query " + q + ": visited " + count + ", expected " + expected);
+				failures++;
+			}
+		}
+
+		double[] otherWeights = { 10, 0.1, 5, 0.2 };
+		ResultHeap resultHeap = new ResultHeap(5);
+		Thread nested = new Thread(() -> tree.rangeSearch(points[0], 0.1, weights, 10,
+				(distance, value) -> tree.nearestNeighbor(points[value], 5, otherWeights, resultHeap)));
+		nested.setDaemon(true);
+		nested.start();
+		nested.join(NESTED_TIMEOUT_MILLIS);
+		if (nested.isAlive())
+		{
+			System.out.println("Search nested in a range search hung");
+			failures++;
+		}
+
+		System.out.println(failures == 0 ? "OK" : failures + " mismatches");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	private static double[] randomPoint(Random random)
+	{
+		double[] point = new double[DIMENSIONS];
+		for (int i = 0; i < DIMENSIONS; i++)
+		{
+			point[i] = random.nextDouble();
+		}
+		return point;
+	}
+
+	private static double distance(double[] point, double[] location, double[] weights)
+	{
+		double d = 0;
+		for (int i = 0; i < DIMENSIONS; i++)
+		{
+			double diff = (point[i] - location[i]) * weights[i];
+			d += diff * diff;
+		}
+		return d;
+	}
+}
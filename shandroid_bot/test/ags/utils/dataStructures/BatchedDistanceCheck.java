@@ -0,0 +1,102 @@
+package ags.utils.dataStructures;
+
+import java.util.Random;
+
+/**
+ * Checks WeightedSqrEuclid's four-point distance kernel against its scalar
+ * pointDist, bit for bit, over random leaves with NaN coordinates mixed in
+ * and every leaf size up to a full bucket. With the argument "bench" it also
+ * times both over full leaves. Run with
+ * 
+ *   javac -d out -sourcepath src test/ags/utils/dataStructures/BatchedDistanceCheck.java
+ *   java -cp out ags.utils.dataStructures.BatchedDistanceCheck [bench]
+ * 
+ * from shandroid_bot. Exits non-zero on any mismatch.
+ */
+public class BatchedDistanceCheck extends WeightedSqrEuclid<Object>
+{
+	private static final int LEAF_SIZE = 24;
+	private static final int TRIALS = 200000;
+	private static final int BENCH_LEAVES = 3000000;
+
+	BatchedDistanceCheck(int dimensions)
+	{
+		super(dimensions, null);
+	}
+
+	public static void main(String[] args)
+	{
+		boolean bench = args.length > 0 && args[0].equals("bench");
+		Random random = new Random(15);
+		long failures = 0;
+		for (int dimensions : new int[] { 1, 3, 7, 10 })
+		{
+			BatchedDistanceCheck tree = new BatchedDistanceCheck(dimensions);
+			double[] points = new double[LEAF_SIZE * dimensions];
+			double[] location = new double[dimensions];
+			double[] weights = new double[dimensions];
+			double[] distances = new double[LEAF_SIZE];
+			for (int trial = 0; trial < TRIALS; trial++)
+			{
+				for (int i = 0; i < points.length; i++)
+				{
+					points[i] = random.nextDouble() * 10 - 5;
+				}
+				if (trial % 10 == 0)
+				{
+					points[random.nextInt(points.length)] = Double.NaN;
+				}
+				for (int i = 0; i < dimensions; i++)
+				{
+					location[i] = random.nextDouble() * 10 - 5;
+					weights[i] = random.nextDouble() * 3;
+				}
+				int count = 1 + random.nextInt(LEAF_SIZE);
+				tree.pointDists(points, count, location, weights, distances);
+				for (int p = 0; p < count; p++)
+				{
+					double expected = tree.pointDist(points, p * dimensions, location, weights);
+					if (Double.doubleToRawLongBits(distances[p]) != Double.doubleToRawLongBits(expected))
+					{
+						failures++;
+					}
+				}
+			}
+			if (bench)
+			{
+				bench(tree, points, location, weights, distances);
+			}
+		}
+		System.out.println(failures == 0 ? "OK" : failures + " mismatches");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	private static void bench(BatchedDistanceCheck tree, double[] points, double[] location, double[] weights,
+			double[] distances)
+	{
+		int dimensions = location.length;
+		double sink = 0;
+		for (int rep = 0; rep < 3; rep++)
+		{
+			long start = System.nanoTime();
+			for (int leaf = 0; leaf < BENCH_LEAVES; leaf++)
+			{
+				tree.pointDists(points, LEAF_SIZE, location, weights, distances);
+				sink += distances[3];
+			}
+			long batched = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int leaf = 0; leaf < BENCH_LEAVES; leaf++)
+			{
+				for (int p = 0; p < LEAF_SIZE; p++)
+				{
+					distances[p] = tree.pointDist(points, p * dimensions, location, weights);
+				}
+				sink += distances[3];
+			}
+			long scalar = System.nanoTime() - start;
+			System.out.println(dimensions + " dimensions: batched " + batched / 1000000 + " ms, scalar "
+					+ scalar / 1000000 + " ms" + (sink == 0 ? " " : ""));
+		}
+	}
+}
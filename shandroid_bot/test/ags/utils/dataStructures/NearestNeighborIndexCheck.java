@@ -0,0 +1,142 @@
+package ags.utils.dataStructures;
+
+import ags.utils.dataStructures.trees.thirdGenTrees.KdTree;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Compares both k-d trees, used only through NearestNeighborIndex, with a
+ * linear scan: single, exact-approximate and batched searches, and the first
+ * stretch of each nearest neighbor iterator. Searches use their own weights,
+ * different from the ones the trees were built with. Run with
+ * 
+ *   javac -d out -sourcepath src test/ags/utils/dataStructures/NearestNeighborIndexCheck.java
+ *   java -cp out ags.utils.dataStructures.NearestNeighborIndexCheck
+ * 
+ * from shandroid_bot. Exits non-zero on any mismatch.
+ */
+public class NearestNeighborIndexCheck
+{
+	private static final int DIMENSIONS = 6;
+	private static final int POINTS = 4000;
+	private static final int QUERIES = 300;
+	private static final int K = 25;
+	private static final int ITERATED = 60;
+
+	public static void main(String[] args)
+	{
+		int failures = 0;
+		for (long seed = 1; seed <= 3; seed++)
+		{
+			WeightedSqrEuclid<Integer> agsTree = new WeightedSqrEuclid<>(DIMENSIONS, null);
+			agsTree.setWeights(new double[] { 1, 1, 1, 1, 1, 1 });
+			failures += check("ags.utils.KdTree", agsTree, seed);
+			failures += check("thirdGenTrees.KdTree", new KdTree<>(DIMENSIONS), seed);
+		}
+		System.out.println(failures == 0 ? "OK" : failures + " mismatches");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	private static int check(String name, NearestNeighborIndex<Integer> index, long seed)
+	{
+		Random random = new Random(seed);
+		double[][] points = new double[POINTS][];
+		for (int p = 0; p < POINTS; p++)
+		{
+			points[p] = randomPoint(random);
+			index.addPoint(points[p].clone(), p);
+		}
+		if (index.size() != POINTS)
+		{
+			System.out.println(name + ": size " + index.size() + ", expected " + POINTS);
+			return 1;
+		}
+
+		int failures = 0;
+		double[] weights = { 0.5, 2, 1, 3, 0.25, 1.5 };
+		ResultHeap resultHeap = new ResultHeap(K);
+		double[][] locations = new double[QUERIES][];
+		for (int q = 0; q < QUERIES; q++)
+		{
+			double[] location = randomPoint(random);
+			locations[q] = location;
+			double[] expected = bruteForce(points, location, weights, K);
+
+			index.nearestNeighbor(location, K, weights, resultHeap);
+			failures += compare(name + " nearestNeighbor", sortedDistances(resultHeap), expected);
+
+			index.nearestNeighborApprox(location, K, weights, resultHeap, 0, Integer.MAX_VALUE);
+			failures += compare(name + " nearestNeighborApprox", sortedDistances(resultHeap), expected);
+
+			double[] iterated = new double[ITERATED];
+			Iterator<Entry<Integer>> iterator = index.nearestNeighborIterator(location, weights);
+			for (int x = 0; x < ITERATED; x++)
+			{
+				iterated[x] = iterator.next().getDistance();
+			}
+			failures += compare(name + " nearestNeighborIterator", iterated,
+					bruteForce(points, location, weights, ITERATED));
+		}
+
+		ResultHeap[] results = new ResultHeap[QUERIES];
+		int[] counts = new int[QUERIES];
+		for (int q = 0; q < QUERIES; q++)
+		{
+			results[q] = new ResultHeap(K);
+			counts[q] = 1 + q % K;
+		}
+		index.nearestNeighborBatch(locations, counts, results, weights);
+		for (int q = 0; q < QUERIES; q++)
+		{
+			failures += compare(name + " nearestNeighborBatch", sortedDistances(results[q]),
+					bruteForce(points, locations[q], weights, counts[q]));
+		}
+		return failures;
+	}
+
+	private static int compare(String what, double[] found, double[] expected)
+	{
+		if (Arrays.equals(found, expected))
+		{
+			return 0;
+		}
+		System.out.println(what + ": " + Arrays.toString(found) + " != " + Arrays.toString(expected));
+		return 1;
+	}
+
+	private static double[] randomPoint(Random random)
+	{
+		double[] point = new double[DIMENSIONS];
+		for (int i = 0; i < DIMENSIONS; i++)
+		{
+			point[i] = random.nextDouble();
+		}
+		return point;
+	}
+
+	private static double[] sortedDistances(ResultHeap resultHeap)
+	{
+		double[] distances = Arrays.copyOf(resultHeap.getDistance(), resultHeap.getValues());
+		Arrays.sort(distances);
+		return distances;
+	}
+
+	private static double[] bruteForce(double[][] points, double[] location, double[] weights, int k)
+	{
+		double[] distances = new double[points.length];
+		for (int p = 0; p < points.length; p++)
+		{
+			double d = 0;
+			for (int i = 0; i < DIMENSIONS; i++)
+			{
+				double diff = (points[p][i] - location[i]) * weights[i];
+				d += diff * diff;
+			}
+			distances[p] = d;
+		}
+		Arrays.sort(distances);
+		return Arrays.copyOf(distances, Math.min(k, distances.length));
+	}
+}
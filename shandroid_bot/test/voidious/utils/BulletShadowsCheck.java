@@ -0,0 +1,135 @@
+package voidious.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Copyright (c) 2026 - Shandroid contributors
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ * 1. The origin of this software must not be misrepresented; you must not claim
+ * that you wrote the original software.
+ * 
+ * 2. Altered source versions must be plainly marked as such, and must not be
+ * misrepresented as being the original software.
+ * 
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+/**
+ * Compares BulletShadows with a brute force reference that keeps every shadow
+ * as added, unmerged. Shadows and queries cluster around random bearings,
+ * many of them across the 0 / 2 * PI seam and offset by whole turns. Run with
+ * 
+ *   javac -cp robocode.jar -d out -sourcepath src test/voidious/utils/BulletShadowsCheck.java
+ *   java -cp robocode.jar:out voidious.utils.BulletShadowsCheck
+ * 
+ * from shandroid_bot. Exits non-zero on any mismatch.
+ */
+public class BulletShadowsCheck
+{
+	private static final int TRIALS = 20000;
+	private static final int MAX_SHADOWS = 8;
+	private static final int QUERIES = 50;
+	private static final double TOLERANCE = 1e-9;
+
+	public static void main(String[] args)
+	{
+		Random random = new Random(24);
+		int failures = 0;
+		for (int trial = 0; trial < TRIALS; trial++)
+		{
+			double center = random.nextBoolean() ? 0 : random.nextDouble() * 20 - 10;
+			BulletShadows shadows = new BulletShadows();
+			List<double[]> reference = new ArrayList<>();
+			int numShadows = 1 + random.nextInt(MAX_SHADOWS);
+			for (int s = 0; s < numShadows; s++)
+			{
+				double angle1 = center + random.nextGaussian() * 0.4 + 2 * Math.PI * (random.nextInt(5) - 2);
+				double angle2 = DiaUtils.normalizeAngle(angle1 + random.nextGaussian() * 0.15, angle1);
+				double min = Math.min(angle1, angle2);
+				double max = Math.max(angle1, angle2);
+				shadows.add(min, max);
+				reference.add(new double[] { min, max });
+			}
+
+			for (int q = 0; q < QUERIES; q++)
+			{
+				double angle = center + random.nextGaussian() * 0.6 + 2 * Math.PI * (random.nextInt(5) - 2);
+				if (shadows.contains(angle) != referenceContains(reference, angle))
+				{
+					System.out.println("trial " + trial + ": contains(" + angle + ") differs");
+					failures++;
+				}
+
+				double halfWidth = Math.abs(random.nextGaussian() * 0.2) + 1e-6;
+				double covered = shadows.coveredFraction(angle - halfWidth, angle + halfWidth);
+				double expected = referenceCoveredFraction(reference, angle - halfWidth, angle + halfWidth);
+				if (Math.abs(covered - expected) > TOLERANCE)
+				{
+					System.out.println("trial " + trial + ": coveredFraction " + covered + " != " + expected);
+					failures++;
+				}
+			}
+		}
+		System.out.println(failures == 0 ? "OK" : failures + " mismatches");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	private static boolean referenceContains(List<double[]> reference, double angle)
+	{
+		for (double[] shadow : reference)
+		{
+			double relative = DiaUtils.normalizeAngle(angle, shadow[0]);
+			if (relative >= shadow[0] && relative <= shadow[1])
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The fraction of the arc covered by the union of every shadow, clipping
+	 * each copy of each shadow a whole number of turns away to the arc and
+	 * merging the pieces
+	 */
+	private static double referenceCoveredFraction(List<double[]> reference, double min, double max)
+	{
+		List<double[]> pieces = new ArrayList<>();
+		for (double[] shadow : reference)
+		{
+			double offset = DiaUtils.normalizeAngle(shadow[0], min) - shadow[0];
+			for (int turns = -2; turns <= 2; turns++)
+			{
+				double pieceMin = Math.max(min, shadow[0] + offset + turns * 2 * Math.PI);
+				double pieceMax = Math.min(max, shadow[1] + offset + turns * 2 * Math.PI);
+				if (pieceMax > pieceMin)
+				{
+					pieces.add(new double[] { pieceMin, pieceMax });
+				}
+			}
+		}
+		pieces.sort((a, b) -> Double.compare(a[0], b[0]));
+
+		double covered = 0;
+		double coveredTo = min;
+		for (double[] piece : pieces)
+		{
+			if (piece[1] > coveredTo)
+			{
+				covered += piece[1] - Math.max(piece[0], coveredTo);
+				coveredTo = piece[1];
+			}
+		}
+		return covered / (max - min);
+	}
+}
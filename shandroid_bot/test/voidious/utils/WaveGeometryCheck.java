@@ -0,0 +1,306 @@
+package voidious.utils;
+
+import voidious.enums.WavePosition;
+import voidious.utils.geom.Circle;
+import voidious.utils.geom.LineSeg;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Copyright (c) 2026 - Shandroid contributors
+ * The reference versions are adapted from Wave and DiaUtils, Copyright (c)
+ * 2012 - Voidious, altered to run outside those classes
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ * 1. The origin of this software must not be misrepresented; you must not claim
+ * that you wrote the original software.
+ * 
+ * 2. Altered source versions must be plainly marked as such, and must not be
+ * misrepresented as being the original software.
+ * 
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+/**
+ * Compares Wave.preciseIntersection, Wave.checkWavePosition and
+ * DiaUtils.distancePointToBot with reference versions built from Circle,
+ * LineSeg and the bot's corner and side objects, as they were before they
+ * moved to raw coordinates. Results must be bit for bit identical. Where the
+ * reference finds no angle, preciseIntersection must return null; where it
+ * fails on a circle crossing one side twice, preciseIntersection must still
+ * return an intersection. One break in seven grazes a side. With the argument
+ * "bench" it also times preciseIntersection against the reference. Run with
+ * 
+ *   javac -cp robocode.jar -d out -sourcepath src test/voidious/utils/WaveGeometryCheck.java
+ *   java -cp robocode.jar:out voidious.utils.WaveGeometryCheck [bench]
+ * 
+ * from shandroid_bot. Exits non-zero on any mismatch.
+ */
+public class WaveGeometryCheck
+{
+	private static final int TRIALS = 200000;
+	private static final int BENCH_WAVES = 2000;
+	private static final int BENCH_REPEATS = 50;
+	private static final double BOT_HALF_WIDTH = 18;
+
+	public static void main(String[] args)
+	{
+		BattleField battleField = new BattleField(800, 600);
+		Random random = new Random(25);
+		int failures = 0;
+		int compared = 0;
+		int noAngles = 0;
+		int doubleCrossings = 0;
+		for (int trial = 0; trial < TRIALS; trial++)
+		{
+			Point2D.Double source = new Point2D.Double(random.nextDouble() * 800, random.nextDouble() * 600);
+			if (trial % 10 == 0)
+			{
+				source = new Point2D.Double(Math.round(source.x), Math.round(source.y));
+			}
+			Wave w = newWave(source, 0.1 + random.nextInt(30) / 10.0, battleField);
+			long time = 5 + random.nextInt(60);
+			double radius = w.distanceTraveled(time);
+			double angle = random.nextDouble() * 2 * Math.PI;
+			double distance = radius + random.nextGaussian() * 20;
+			if (trial % 7 == 0)
+			{
+				// Graze one side: put it just inside the wave's start circle
+				angle = random.nextInt(4) * Math.PI / 2;
+				distance = radius + BOT_HALF_WIDTH - random.nextDouble() * 0.5;
+			}
+			Point2D.Double location = new Point2D.Double(source.x + Math.sin(angle) * distance,
+					source.y + Math.cos(angle) * distance);
+			List<RobotState> states = new ArrayList<>();
+			int numStates = 1 + random.nextInt(4);
+			for (int x = 0; x < numStates; x++)
+			{
+				states.add(new RobotState(new Point2D.Double(location.x + x * random.nextGaussian() * 3,
+						location.y + x * random.nextGaussian() * 3), 0, 0, time + x, false));
+			}
+
+			for (RobotState state : states)
+			{
+				if (w.checkWavePosition(state) != referenceWavePosition(w, state))
+				{
+					System.out.println("trial " + trial + ": checkWavePosition differs");
+					failures++;
+				}
+				if (DiaUtils.distancePointToBot(source, state) != referenceDistanceToBot(source, state))
+				{
+					System.out.println("trial " + trial + ": distancePointToBot differs");
+					failures++;
+				}
+			}
+
+			Intersection intersection = w.preciseIntersection(states);
+			double[] expected;
+			try
+			{
+				expected = referenceIntersection(w, states);
+			}
+			catch (ArrayIndexOutOfBoundsException e)
+			{
+				// Circle.intersects overruns its array when a circle crosses
+				// one side twice
+				doubleCrossings++;
+				if (intersection == null)
+				{
+					System.out.println("trial " + trial + ": no intersection for a double crossing");
+					failures++;
+				}
+				continue;
+			}
+			if (expected == null)
+			{
+				noAngles++;
+				if (intersection != null)
+				{
+					System.out.println("trial " + trial + ": intersection where the reference found no angles");
+					failures++;
+				}
+				continue;
+			}
+			compared++;
+			if (intersection == null || intersection.getAngle() != expected[0]
+					|| intersection.getBandwidth() != expected[1])
+			{
+				System.out.println("trial " + trial + ": preciseIntersection differs");
+				failures++;
+			}
+		}
+		System.out.println(compared + " intersections compared, " + noAngles + " with no angles, " + doubleCrossings
+				+ " double crossings");
+
+		if (args.length > 0 && args[0].equals("bench"))
+		{
+			bench(battleField, random);
+		}
+		System.out.println(failures == 0 ? "OK" : failures + " mismatches");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	private static Wave newWave(Point2D.Double source, double bulletPower, BattleField battleField)
+	{
+		return new Wave("check", source, new Point2D.Double(400, 300), 1, 0, bulletPower, 0, 8, 1, battleField, null);
+	}
+
+	private static void bench(BattleField battleField, Random random)
+	{
+		List<Wave> waves = new ArrayList<>();
+		List<List<RobotState>> allStates = new ArrayList<>();
+		while (waves.size() < BENCH_WAVES)
+		{
+			Point2D.Double source = new Point2D.Double(random.nextDouble() * 800, random.nextDouble() * 600);
+			Wave w = newWave(source, 2.0, battleField);
+			long time = 20;
+			double radius = w.distanceTraveled(time);
+			double angle = random.nextDouble() * 2 * Math.PI;
+			List<RobotState> states = new ArrayList<>();
+			for (int x = 0; x < 4; x++)
+			{
+				double distance = radius + 10 - x * 5;
+				states.add(new RobotState(new Point2D.Double(source.x + Math.sin(angle) * distance,
+						source.y + Math.cos(angle) * distance), 0, 0, time + x, false));
+			}
+			try
+			{
+				if (referenceIntersection(w, states) == null)
+				{
+					continue;
+				}
+			}
+			catch (ArrayIndexOutOfBoundsException e)
+			{
+				continue;
+			}
+			waves.add(w);
+			allStates.add(states);
+		}
+
+		double sink = 0;
+		int calls = BENCH_REPEATS * BENCH_WAVES;
+		for (int rep = 0; rep < 5; rep++)
+		{
+			long start = System.nanoTime();
+			for (int x = 0; x < calls; x++)
+			{
+				sink += referenceIntersection(waves.get(x % BENCH_WAVES), allStates.get(x % BENCH_WAVES))[0];
+			}
+			long reference = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int x = 0; x < calls; x++)
+			{
+				sink += waves.get(x % BENCH_WAVES).preciseIntersection(allStates.get(x % BENCH_WAVES)).getAngle();
+			}
+			long current = System.nanoTime() - start;
+			System.out.println("preciseIntersection: reference " + reference / calls + " ns, current " + current / calls
+					+ " ns per call" + (sink == 0 ? " " : ""));
+		}
+	}
+
+	/**
+	 * Center angle and bandwidth of the aim angles the wave could hit the bot
+	 * at, or null if there are none
+	 */
+	private static double[] referenceIntersection(Wave w, List<RobotState> states)
+	{
+		Point2D.Double source = w.getSourceLocation();
+		List<Double> aimAngles = new ArrayList<>();
+		for (RobotState state : states)
+		{
+			Circle waveStart = new Circle(source.x, source.y, w.getBulletSpeed() * (state.getTime() - w.getFireTime()));
+			Circle waveEnd = new Circle(source.x, source.y, w.getBulletSpeed() * (state.getTime() - w.getFireTime() + 1));
+			for (Point2D.Double corner : state.botCorners())
+			{
+				if (waveEnd.contains(corner) && !waveStart.contains(corner))
+				{
+					aimAngles.add(DiaUtils.absoluteBearing(source, corner));
+				}
+			}
+			for (Line2D.Double side : state.botSides())
+			{
+				LineSeg seg = new LineSeg(side.x1, side.y1, side.x2, side.y2);
+				for (Circle circle : new Circle[] { waveStart, waveEnd })
+				{
+					for (Point2D.Double intersect : circle.intersects(seg))
+					{
+						if (intersect != null)
+						{
+							aimAngles.add(DiaUtils.absoluteBearing(source, intersect));
+						}
+					}
+				}
+			}
+		}
+		if (aimAngles.isEmpty())
+		{
+			return null;
+		}
+
+		double reference = aimAngles.get(0);
+		double minAngle = reference;
+		double maxAngle = reference;
+		for (double aimAngle : aimAngles)
+		{
+			aimAngle = DiaUtils.normalizeAngle(aimAngle, reference);
+			maxAngle = Math.max(maxAngle, aimAngle);
+			minAngle = Math.min(minAngle, aimAngle);
+		}
+		double centerAngle = (maxAngle + minAngle) / 2;
+		return new double[] { centerAngle, maxAngle - centerAngle };
+	}
+
+	private static double referenceDistanceToBot(Point2D.Double source, RobotState state)
+	{
+		Point2D.Double bot = state.getLocation();
+		if (source.x > bot.x - BOT_HALF_WIDTH && source.x < bot.x + BOT_HALF_WIDTH && source.y > bot.y - BOT_HALF_WIDTH
+				&& source.y < bot.y + BOT_HALF_WIDTH)
+		{
+			return 0;
+		}
+		double distance = Double.POSITIVE_INFINITY;
+		for (Line2D.Double side : state.botSides())
+		{
+			distance = Math.min(distance, side.ptSegDist(source));
+		}
+		return distance;
+	}
+
+	private static WavePosition referenceWavePosition(Wave w, RobotState state)
+	{
+		Point2D.Double source = w.getSourceLocation();
+		double enemyDistanceSq = source.distanceSq(state.getLocation());
+		double endRadius = w.distanceTraveled(state.getTime() + 1);
+		if (enemyDistanceSq > DiaUtils.square(endRadius + BOT_HALF_WIDTH / Math.cos(Math.PI / 4))
+				|| referenceDistanceToBot(source, state) > endRadius)
+		{
+			return WavePosition.MIDAIR;
+		}
+		else if (enemyDistanceSq > DiaUtils.square(endRadius))
+		{
+			return WavePosition.BREAKING_FRONT;
+		}
+
+		double startRadius = w.distanceTraveled(state.getTime());
+		for (Point2D.Double corner : state.botCorners())
+		{
+			if (corner.distanceSq(source) > DiaUtils.square(startRadius))
+			{
+				return WavePosition.BREAKING_CENTER;
+			}
+		}
+		return WavePosition.GONE;
+	}
+}